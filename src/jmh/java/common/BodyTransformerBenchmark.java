@@ -0,0 +1,101 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 대문자 변환 응답 만들기: 예전 방식(바디를 String 으로 디코딩 → toUpperCase → 이어 붙이기 → 인코딩)과 {@link BodyTransformer}.
+ * 바디는 여러 DATA 프레임을 이어 붙인 것처럼 16KB 조각의 CompositeByteBuf 이고, 결과 버퍼는 풀에서 받아 바로 반환합니다.
+ * {@code -prof gc} 로 보면 ByteBuf 쪽은 바디 크기와 상관없이 할당이 거의 없어야 합니다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BodyTransformerBenchmark {
+
+    private static final ByteBufAllocator ALLOC = PooledByteBufAllocator.DEFAULT;
+
+    @Param({"1024", "65536"})
+    public int size;
+
+    /** ascii: JSON 같은 ASCII 바디, korean: 한글이 섞인 바디 */
+    @Param({"ascii", "korean"})
+    public String body;
+
+    @Param({"UTF-8", "EUC-KR"})
+    public String charsetName;
+
+    private Charset charset;
+    private ByteBuf content;
+
+    @Setup
+    public void setup() {
+        charset = Charset.forName(charsetName);
+        String unit = body.equals("ascii") ? "{\"test1\":\"hello123\", \"test2\":\"world\"}\n" : "{\"이름\":\"홍길동\", \"memo\":\"hello\"}\n";
+        StringBuilder text = new StringBuilder();
+        while (text.length() < size) {
+            text.append(unit);
+        }
+        byte[] bytes = text.toString().getBytes(charset);
+        content = frames(bytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        content.release();
+    }
+
+    @Benchmark
+    public int string() {
+        String upper = "Received " + content.toString(charset).toUpperCase() + "!!!";
+        ByteBuf out = ALLOC.buffer(content.readableBytes() + 16);
+        out.writeBytes(upper.getBytes(charset));
+        return release(out);
+    }
+
+    @Benchmark
+    public int byteBuf() {
+        ByteBuf out = ALLOC.buffer(content.readableBytes() + 16);
+        out.writeCharSequence("Received ", charset);
+        BodyTransformer.UPPER_CASE.transform(content, charset, out);
+        out.writeCharSequence("!!!", charset);
+        return release(out);
+    }
+
+    private static int release(ByteBuf out) {
+        int n = out.readableBytes();
+        out.release();
+        return n;
+    }
+
+    /** DATA 프레임(16KB)별 버퍼를 이어 붙인 바디 */
+    private static CompositeByteBuf frames(byte[] bytes) {
+        CompositeByteBuf composite = ALLOC.compositeBuffer(Integer.MAX_VALUE);
+        for (int off = 0; off < bytes.length; off += 16384) {
+            int len = Math.min(16384, bytes.length - off);
+            composite.addComponent(true, ALLOC.directBuffer(len).writeBytes(bytes, off, len));
+        }
+        return composite;
+    }
+}
@@ -0,0 +1,179 @@
+package common;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2Frame;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server2.StreamHandler;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link FlushCoalescingHandler} 유무에 따른 server2 파이프라인의 처리량과 소켓 flush 수 비교 (루프백).
+ * 한 번의 연산은 한 커넥션에 {@code streams} 개 요청을 동시에 보내고 응답을 모두 받는 것이며,
+ * 서버가 소켓까지 보낸 flush 수를 보조 카운터 {@code socketFlushes} 로 함께 보고합니다 (초당 값이므로 연산당 flush 수 = socketFlushes / 처리량).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlushCoalescingBenchmark {
+
+    @Param({"false", "true"})
+    public boolean coalesce;
+
+    @Param({"1", "16", "64"})
+    public int streams;
+
+    @Param({"128"})
+    public int bodySize;
+
+    // 서버 파이프라인 맨 앞(소켓 쪽)에서 센 flush 수
+    private final LongAdder flushes = new LongAdder();
+    private EventLoopGroup serverGroup;
+    private EventLoopGroup clientGroup;
+    private Channel server;
+    private Channel client;
+    private byte[] body;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long socketFlushes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Transport transport = Transport.current();
+        serverGroup = transport.newEventLoopGroup(1);
+        clientGroup = transport.newEventLoopGroup(1);
+        body = new byte[bodySize];
+
+        ServerBootstrap sb = new ServerBootstrap();
+        server = transport.configure(sb.group(serverGroup))
+            .childHandler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    ch.pipeline().addLast(new ChannelOutboundHandlerAdapter() {
+                        @Override
+                        public void flush(ChannelHandlerContext ctx) {
+                            flushes.increment();
+                            ctx.flush();
+                        }
+                    });
+                    if (coalesce) {
+                        ch.pipeline().addLast(new FlushCoalescingHandler(0, TimeUnit.MICROSECONDS, 65536));
+                    }
+                    ch.pipeline().addLast(Http2FrameCodecBuilder.forServer().build());
+                    ch.pipeline().addLast(new Http2MultiplexHandler(new ChannelInitializer<Http2StreamChannel>() {
+                        @Override
+                        protected void initChannel(Http2StreamChannel ch) {
+                            ch.pipeline().addLast(new StreamHandler());
+                        }
+                    }));
+                }
+            })
+            .bind(new InetSocketAddress("127.0.0.1", 0)).syncUninterruptibly().channel();
+
+        Bootstrap b = new Bootstrap();
+        client = transport.configure(b.group(clientGroup))
+            .handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    ch.pipeline().addLast(Http2FrameCodecBuilder.forClient().build());
+                    ch.pipeline().addLast(new Http2MultiplexHandler(new SimpleChannelInboundHandler<Http2Frame>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, Http2Frame frame) {
+                        }
+                    }));
+                }
+            })
+            .connect(server.localAddress()).syncUninterruptibly().channel();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (client != null) {
+            client.close().syncUninterruptibly();
+        }
+        if (server != null) {
+            server.close().syncUninterruptibly();
+        }
+        clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Benchmark
+    public Object concurrentStreams(Counters counters) {
+        long before = flushes.sum();
+        Promise<Object> done = client.eventLoop().newPromise();
+        AtomicInteger remaining = new AtomicInteger(streams);
+        // 클라이언트 이벤트 루프에서 한꺼번에 열어 요청들이 같은 읽기 구간에 도착하게 함
+        client.eventLoop().execute(() -> {
+            for (int i = 0; i < streams; i++) {
+                new Http2StreamChannelBootstrap(client)
+                    .handler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            boolean end = msg instanceof Http2HeadersFrame && ((Http2HeadersFrame) msg).isEndStream()
+                                || msg instanceof Http2DataFrame && ((Http2DataFrame) msg).isEndStream();
+                            ReferenceCountUtil.release(msg);
+                            if (end) {
+                                ctx.close();
+                                if (remaining.decrementAndGet() == 0) {
+                                    done.trySuccess(null);
+                                }
+                            }
+                        }
+                    })
+                    .open()
+                    .addListener((Future<Http2StreamChannel> f) -> {
+                        Http2StreamChannel stream = f.getNow();
+                        stream.write(new DefaultHttp2HeadersFrame(Http2ClientFrames.requestHeaders(bodySize), false));
+                        stream.writeAndFlush(new DefaultHttp2DataFrame(Unpooled.wrappedBuffer(body), true));
+                    });
+            }
+        });
+        Object result = done.syncUninterruptibly().getNow();
+        counters.socketFlushes += flushes.sum() - before;
+        return result;
+    }
+}
@@ -0,0 +1,91 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http2.DefaultHttp2FrameWriter;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * 벤치마크 입력용: 클라이언트가 보내는 HTTP/2 바이트 스트림(프리페이스 + SETTINGS + 요청들)을 미리 인코딩합니다.
+ * 서버 핸들러를 EmbeddedChannel 에 올려두고 이 바이트를 그대로 writeInbound 하면
+ * 실제 소켓에서 읽은 것과 같은 디코딩 경로를 탑니다.
+ */
+public final class Http2ClientFrames {
+
+    private Http2ClientFrames() {
+    }
+
+    /**
+     * @param streams   한 커넥션에서 보낼 요청(스트림) 수
+     * @param body      요청 바디 (각 스트림이 같은 바디를 보냄)
+     * @param frameSize DATA 프레임 하나의 최대 크기 (16384 이하)
+     */
+    public static ByteBuf connection(int streams, ByteBuf body, int frameSize) {
+        EmbeddedChannel sink = new EmbeddedChannel(new ChannelOutboundHandlerAdapter());
+        ChannelHandlerContext ctx = sink.pipeline().firstContext();
+        DefaultHttp2FrameWriter writer = new DefaultHttp2FrameWriter();
+
+        sink.writeOutbound(Http2CodecUtil.connectionPrefaceBuf());
+        writer.writeSettings(ctx, new Http2Settings(), ctx.newPromise());
+
+        for (int i = 0; i < streams; i++) {
+            int streamId = 2 * i + 1;
+            boolean hasBody = body.isReadable();
+            writer.writeHeaders(ctx, streamId, requestHeaders(body.readableBytes()), 0, !hasBody, ctx.newPromise());
+            for (int offset = 0; offset < body.readableBytes(); offset += frameSize) {
+                int length = Math.min(frameSize, body.readableBytes() - offset);
+                boolean last = offset + length == body.readableBytes();
+                writer.writeData(ctx, streamId, body.retainedSlice(body.readerIndex() + offset, length),
+                    0, last, ctx.newPromise());
+            }
+        }
+        sink.flushOutbound();
+
+        CompositeByteBuf out = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        for (ByteBuf buf; (buf = sink.readOutbound()) != null; ) {
+            out.addComponent(true, buf);
+        }
+        sink.finishAndReleaseAll();
+        // 벤치마크마다 retainedDuplicate 로 재사용하므로 연속된 한 덩어리로 만들어 둠
+        ByteBuf flat = Unpooled.directBuffer(out.readableBytes()).writeBytes(out);
+        out.release();
+        return flat;
+    }
+
+    public static Http2Headers requestHeaders(int contentLength) {
+        return new DefaultHttp2Headers()
+            .method("POST")
+            .scheme("http")
+            .authority("127.0.0.1:8080")
+            .path("/api/v1/resource")
+            .add("content-type", "application/json")
+            .add("content-length", String.valueOf(contentLength));
+    }
+
+    /** 지정한 크기의 JSON 비슷한 ASCII 바디 */
+    public static ByteBuf body(int size) {
+        ByteBuf buf = Unpooled.directBuffer(size);
+        for (int i = 0; i < size; i++) {
+            buf.writeByte('a' + (i % 26));
+        }
+        return buf;
+    }
+
+    /** EmbeddedChannel 에 쌓인 아웃바운드 메시지를 모두 꺼내 해제하고 개수를 반환 */
+    public static int drainOutbound(EmbeddedChannel channel) {
+        int count = 0;
+        for (Object msg; (msg = channel.readOutbound()) != null; ) {
+            ReferenceCountUtil.release(msg);
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,77 @@
+package common;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.AsciiString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 라우트 수에 따른 {@link Router} 매칭 비용. 매 호출마다 같은 응답 객체를 돌려주므로 측정값은 매칭 자체의 비용입니다.
+ * {@code -prof gc} 로 보면 파라미터 없는 경로는 캡처용 값 배열 하나 외에는 할당이 없어야 합니다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+    private static final Response OK = Response.status(HttpResponseStatus.OK);
+
+    @Param({"10", "500"})
+    public int routes;
+
+    private Router router;
+    private Request literal;
+    private Request param;
+    private Request miss;
+
+    @Setup
+    public void setup() {
+        Router.Builder builder = Router.builder().fallback(request -> OK);
+        for (int i = 0; i < routes; i++) {
+            builder.get("/api/v1/service" + i + "/items", request -> OK);
+            builder.get("/api/v1/service" + i + "/items/{id}", request -> OK);
+        }
+        router = builder.build();
+        literal = request("/api/v1/service" + (routes - 1) + "/items");
+        param = request("/api/v1/service" + (routes / 2) + "/items/12345");
+        miss = request("/api/v2/unknown/path");
+    }
+
+    private static Request request(String path) {
+        Http2Headers headers = new DefaultHttp2Headers().method("GET").path(new AsciiString(path));
+        return new Request(headers, Unpooled.EMPTY_BUFFER, ByteBufAllocator.DEFAULT);
+    }
+
+    @Benchmark
+    public Response literal() throws Exception {
+        return router.handle(literal);
+    }
+
+    @Benchmark
+    public Response param() throws Exception {
+        return router.handle(param);
+    }
+
+    @Benchmark
+    public Response miss() throws Exception {
+        return router.handle(miss);
+    }
+}
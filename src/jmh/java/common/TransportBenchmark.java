@@ -0,0 +1,142 @@
+package common;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2Frame;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server2.StreamHandler;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 루프백 소켓 위에서 전송 계층(NIO / epoll / io_uring)별 h2c 요청-응답 왕복 비교.
+ * 서버는 server2 와 같은 파이프라인(Http2FrameCodec + Http2MultiplexHandler + StreamHandler)을 씁니다.
+ * 현재 호스트에서 사용할 수 없는 전송 계층은 NIO 로 대체하지 않고 해당 파라미터만 실패로 보고됩니다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({"NIO", "EPOLL", "IO_URING"})
+    public Transport transport;
+
+    @Param({"128"})
+    public int bodySize;
+
+    private EventLoopGroup serverGroup;
+    private EventLoopGroup clientGroup;
+    private Channel server;
+    private Channel client;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!transport.isAvailable()) {
+            throw new IllegalStateException(transport + " is not available on this host");
+        }
+        serverGroup = transport.newEventLoopGroup(1);
+        clientGroup = transport.newEventLoopGroup(1);
+        body = new byte[bodySize];
+
+        ServerBootstrap sb = new ServerBootstrap();
+        server = transport.configure(sb.group(serverGroup))
+            .childHandler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    ch.pipeline().addLast(Http2FrameCodecBuilder.forServer().build());
+                    ch.pipeline().addLast(new Http2MultiplexHandler(new ChannelInitializer<Http2StreamChannel>() {
+                        @Override
+                        protected void initChannel(Http2StreamChannel ch) {
+                            ch.pipeline().addLast(new StreamHandler());
+                        }
+                    }));
+                }
+            })
+            .bind(new InetSocketAddress("127.0.0.1", 0)).syncUninterruptibly().channel();
+
+        Bootstrap b = new Bootstrap();
+        client = transport.configure(b.group(clientGroup))
+            .handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    ch.pipeline().addLast(Http2FrameCodecBuilder.forClient().build());
+                    ch.pipeline().addLast(new Http2MultiplexHandler(new SimpleChannelInboundHandler<Http2Frame>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, Http2Frame frame) {
+                        }
+                    }));
+                }
+            })
+            .connect(server.localAddress()).syncUninterruptibly().channel();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (client != null) {
+            client.close().syncUninterruptibly();
+        }
+        if (server != null) {
+            server.close().syncUninterruptibly();
+        }
+        clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        Promise<Object> done = client.eventLoop().newPromise();
+        Http2StreamChannel stream = new Http2StreamChannelBootstrap(client)
+            .handler(new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                    boolean end = msg instanceof Http2HeadersFrame && ((Http2HeadersFrame) msg).isEndStream()
+                        || msg instanceof Http2DataFrame && ((Http2DataFrame) msg).isEndStream();
+                    ReferenceCountUtil.release(msg);
+                    if (end) {
+                        done.trySuccess(null);
+                        ctx.close();
+                    }
+                }
+            })
+            .open().syncUninterruptibly().getNow();
+
+        stream.write(new DefaultHttp2HeadersFrame(Http2ClientFrames.requestHeaders(bodySize), false));
+        stream.writeAndFlush(new DefaultHttp2DataFrame(Unpooled.wrappedBuffer(body), true));
+        return done.syncUninterruptibly().getNow();
+    }
+}
@@ -0,0 +1,67 @@
+package server;
+
+import common.Http2ClientFrames;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Http2ServerHandler 의 onHeadersRead → onDataRead → handleRequest 경로.
+ *
+ * <p>한 번의 연산 = 새 커넥션 하나에서 {@code streams} 개의 POST 요청을 디코딩하고 응답을 인코딩하는 것.
+ * 입력 바이트는 Trial 단위로 미리 만들어 두므로 클라이언트 측 인코딩 비용은 포함되지 않습니다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Http2ServerHandlerBenchmark {
+
+    @Param({"0", "128", "4096", "65536"})
+    public int bodySize;
+
+    @Param({"1024", "16384"})
+    public int frameSize;
+
+    @Param({"1", "16", "128"})
+    public int streams;
+
+    private ByteBuf input;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ByteBuf body = Http2ClientFrames.body(bodySize);
+        input = Http2ClientFrames.connection(streams, body, frameSize);
+        body.release();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        input.release();
+    }
+
+    @Benchmark
+    public int requests() {
+        EmbeddedChannel channel = new EmbeddedChannel(new Http2ServerHandler());
+        channel.writeInbound(input.retainedDuplicate());
+        int frames = Http2ClientFrames.drainOutbound(channel);
+        channel.finishAndReleaseAll();
+        return frames;
+    }
+}
@@ -0,0 +1,83 @@
+package server2;
+
+import common.Http2ClientFrames;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2Headers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StreamHandler.channelRead 경로. 스트림마다 EmbeddedChannel 하나(= Http2StreamChannel 하나)를 만들고
+ * {@code streams} 개 스트림의 DATA 프레임을 라운드로빈으로 섞어서 넣어 멀티플렉싱된 수신 순서를 흉내냅니다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamHandlerBenchmark {
+
+    @Param({"0", "128", "4096", "65536"})
+    public int bodySize;
+
+    @Param({"1024", "16384"})
+    public int frameSize;
+
+    @Param({"1", "16", "128"})
+    public int streams;
+
+    private ByteBuf body;
+    private Http2Headers headers;
+    private EmbeddedChannel[] channels;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        body = Http2ClientFrames.body(bodySize);
+        headers = Http2ClientFrames.requestHeaders(bodySize);
+        channels = new EmbeddedChannel[streams];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        body.release();
+    }
+
+    @Benchmark
+    public int requests() {
+        boolean hasBody = body.isReadable();
+        for (int i = 0; i < streams; i++) {
+            channels[i] = new EmbeddedChannel(new StreamHandler());
+            channels[i].writeInbound(new DefaultHttp2HeadersFrame(headers, !hasBody));
+        }
+        for (int offset = 0; offset < bodySize; offset += frameSize) {
+            int length = Math.min(frameSize, bodySize - offset);
+            boolean last = offset + length == bodySize;
+            for (EmbeddedChannel channel : channels) {
+                channel.writeInbound(new DefaultHttp2DataFrame(body.retainedSlice(offset, length), last));
+            }
+        }
+        int frames = 0;
+        for (EmbeddedChannel channel : channels) {
+            frames += Http2ClientFrames.drainOutbound(channel);
+            channel.finishAndReleaseAll();
+        }
+        return frames;
+    }
+}
@@ -1,10 +1,10 @@
 package client;
 
+import common.Http2Config;
+import common.Transport;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http2.*;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
@@ -25,12 +25,12 @@ public class Http2Client {
     private static final String BODY   = "{\"key\":\"value\"}";  // 전송할 JSON 바디
 
     public static void main(String[] args) throws Exception {
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        Transport transport = Transport.current();
+        EventLoopGroup workerGroup = transport.newEventLoopGroup(0);
 
         try {
             Bootstrap b = new Bootstrap();
-            b.group(workerGroup)
-                .channel(NioSocketChannel.class)
+            transport.configure(b.group(workerGroup))
                 .handler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel ch) {
@@ -39,7 +39,8 @@ public class Http2Client {
 
                         // HTTP/2 프레임 코덱 설정 (cleartext h2c)
                         Http2FrameCodec frameCodec = Http2FrameCodecBuilder.forClient()
-                            .initialSettings(Http2Settings.defaultSettings())
+                            .initialSettings(Http2Config.settings())
+                            .headerSensitivityDetector(Http2Config.sensitivityDetector())
                             .build();
                         p.addLast(frameCodec);
 
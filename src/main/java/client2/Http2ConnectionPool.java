@@ -0,0 +1,359 @@
+package client2;
+
+import common.Compression;
+import common.Http2CompressionHandler;
+import common.Http2Config;
+import common.Http2Tls;
+import common.PingKeepaliveHandler;
+import common.Transport;
+import common.WindowTuningHandler;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http2.Http2Frame;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2GoAwayFrame;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 여러 h2c(prior-knowledge) 또는 TLS(h2) 커넥션에 스트림을 분산하는 커넥션 풀.
+ *
+ * <ul>
+ *   <li>스트림은 (활성 스트림 수 + 1) x RTT 가 가장 작은 커넥션에 엽니다. RTT 는 PING 으로 잰 값이며
+ *       ({@link PingKeepaliveHandler}), ACK 가 늦어지는 커넥션은 그만큼 RTT 가 큰 것으로 봅니다.
+ *       RTT 가 {@link #MIN_RTT_NANOS} 이하로 비슷하면 활성 스트림 수로만 고르는 것과 같습니다.</li>
+ *   <li>PING ACK 가 오지 않는 커넥션은 바로 풀에서 빠지고 닫히며, 그 위의 스트림은 바로 실패합니다.</li>
+ *   <li>모든 커넥션이 상대의 SETTINGS_MAX_CONCURRENT_STREAMS 에 도달했으면 maxConnections 까지 새 커넥션을 엽니다.</li>
+ *   <li>그래도 가득 차 있으면 가장 한가한 커넥션을 쓰고, 코덱의 StreamBufferingEncoder 가 자리가 날 때까지 스트림을 대기시킵니다.</li>
+ *   <li>GOAWAY 를 받은 커넥션은 새 스트림 대상에서 빠지고, 남은 스트림이 끝나면 닫힙니다. 이후 요청은 새 커넥션으로 갑니다.</li>
+ * </ul>
+ *
+ * 커넥션은 EventLoopGroup 의 이벤트 루프에 라운드로빈으로 배치되므로 여러 코어를 사용합니다.
+ */
+public final class Http2ConnectionPool {
+
+    // 커넥션 선택 시 RTT 의 하한. 이보다 작은 RTT 차이(루프백/같은 DC 의 지터)는 무시
+    private static final long MIN_RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Bootstrap bootstrap;
+    private final String host;
+    private final int port;
+    private final int maxConnections;
+    // null 이면 h2c
+    private final SslContext sslContext;
+    // 스트림마다 붙이는 content-encoding 코덱 설정
+    private final Compression compression = Compression.fromSystemProperties();
+
+    private final List<PooledConnection> connections = new CopyOnWriteArrayList<>();
+    // 연결 중인 커넥션 (한 번에 하나만 연결 시도), this 로 보호
+    private Future<PooledConnection> connecting;
+    private volatile boolean closed;
+
+    public Http2ConnectionPool(EventLoopGroup group, String host, int port, int maxConnections) {
+        this(group, host, port, maxConnections, null);
+    }
+
+    /**
+     * @param sslContext TLS 로 연결할 때의 클라이언트 SslContext ({@link Http2Tls#clientContext()}), null 이면 h2c.
+     *                   모든 커넥션이 공유하므로 재접속 시 세션이 재개됨
+     */
+    public Http2ConnectionPool(EventLoopGroup group, String host, int port, int maxConnections,
+        SslContext sslContext) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections: " + maxConnections);
+        }
+        this.host = host;
+        this.port = port;
+        this.maxConnections = maxConnections;
+        this.sslContext = sslContext;
+        this.bootstrap = Transport.current().configure(new Bootstrap().group(group))
+            .option(ChannelOption.SO_KEEPALIVE, true)
+            .handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    // 0) TLS (코덱이 보내는 preface 는 핸드셰이크 후 전송됨)
+                    if (sslContext != null) {
+                        ch.pipeline().addLast(sslContext.newHandler(ch.alloc(), host, port));
+                    }
+                    // 1) HTTP/2 프레임 코덱 (prior-knowledge h2c)
+                    //    MAX_CONCURRENT_STREAMS 를 넘는 스트림은 에러 대신 버퍼링
+                    Http2Settings settings = Http2Config.settings();
+                    ch.pipeline().addLast(Http2FrameCodecBuilder.forClient()
+                        .initialSettings(settings)
+                        .headerSensitivityDetector(Http2Config.sensitivityDetector())
+                        .encoderEnforceMaxConcurrentStreams(true)
+                        .build());
+                    WindowTuningHandler windowTuning = WindowTuningHandler.fromConfig(settings);
+                    if (windowTuning != null) {
+                        ch.pipeline().addLast(windowTuning);
+                    }
+                    PingKeepaliveHandler keepalive = PingKeepaliveHandler.fromConfig();
+                    if (keepalive != null) {
+                        ch.pipeline().addLast(keepalive);
+                    }
+                    // 2) GOAWAY/커넥션 종료 감지
+                    ch.pipeline().addLast(new ConnectionStateHandler());
+                    // 3) 멀티플렉싱: 각 스트림별 Channel 생성 (서버 푸시는 사용하지 않음)
+                    ch.pipeline().addLast(new Http2MultiplexHandler(new SimpleChannelInboundHandler<Http2Frame>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, Http2Frame frame) {
+                        }
+                    }));
+                }
+            });
+    }
+
+    public String host() {
+        return host;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    /** 요청 :scheme */
+    public String scheme() {
+        return sslContext != null ? "https" : "http";
+    }
+
+    /** 커넥션을 하나 미리 열어 둡니다. */
+    public Future<?> connect() {
+        return newConnection();
+    }
+
+    /**
+     * 가장 빨리 응답할 것으로 보이는 커넥션에 새 스트림을 엽니다.
+     *
+     * @param streamHandler 스트림 채널 파이프라인에 추가할 핸들러 (응답 처리)
+     */
+    public Future<Http2StreamChannel> openStream(ChannelHandler streamHandler) {
+        if (closed) {
+            throw new IllegalStateException("pool is closed");
+        }
+        PooledConnection best = leastLoaded();
+        if (best == null || !best.hasCapacity()) {
+            Future<PooledConnection> pending = connectIfAllowed();
+            if (pending != null) {
+                return openWhenConnected(pending, streamHandler);
+            }
+            if (best == null) {
+                // 열린 커넥션이 하나도 없고 더 열 수도 없으면 연결 중인 커넥션을 기다림
+                return openWhenConnected(newConnection(), streamHandler);
+            }
+        }
+        return best.openStream(streamHandler);
+    }
+
+    public int size() {
+        return connections.size();
+    }
+
+    public void close() {
+        closed = true;
+        for (PooledConnection c : connections) {
+            c.channel.close();
+        }
+        connections.clear();
+    }
+
+    private PooledConnection leastLoaded() {
+        PooledConnection best = null;
+        long bestCost = 0;
+        for (PooledConnection c : connections) {
+            if (!c.isUsable()) {
+                continue;
+            }
+            long cost = c.cost();
+            if (best == null || cost < bestCost) {
+                best = c;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /** 커넥션 수가 상한 미만일 때만 새로 연결 (이미 연결 중이면 그 결과를 공유) */
+    private synchronized Future<PooledConnection> connectIfAllowed() {
+        if (connecting != null) {
+            return connecting;
+        }
+        if (connections.size() >= maxConnections) {
+            return null;
+        }
+        return newConnection();
+    }
+
+    private synchronized Future<PooledConnection> newConnection() {
+        if (connecting != null) {
+            return connecting;
+        }
+        ChannelFuture cf = bootstrap.connect(host, port);
+        Promise<PooledConnection> promise = cf.channel().eventLoop().newPromise();
+        connecting = promise;
+        cf.addListener((ChannelFuture f) -> {
+            synchronized (this) {
+                connecting = null;
+            }
+            if (!f.isSuccess()) {
+                promise.tryFailure(f.cause());
+                return;
+            }
+            // TLS 면 h2 협상이 끝난 뒤에 풀에 넣음. connect 리스너는 channelActive(코덱의 preface 전송) 전에 불리므로 그 뒤로 미룸
+            f.channel().eventLoop().execute(() -> Http2Tls.negotiated(f.channel()).addListener((Future<Channel> n) -> {
+                if (!n.isSuccess()) {
+                    promise.tryFailure(n.cause());
+                    return;
+                }
+                PooledConnection c = n.getNow().pipeline().get(ConnectionStateHandler.class).connection;
+                if (closed) {
+                    c.channel.close();
+                    promise.tryFailure(new IllegalStateException("pool is closed"));
+                    return;
+                }
+                connections.add(c);
+                promise.trySuccess(c);
+            }));
+        });
+        return promise;
+    }
+
+    private Future<Http2StreamChannel> openWhenConnected(Future<PooledConnection> pending,
+        ChannelHandler streamHandler) {
+        Promise<Http2StreamChannel> promise = bootstrap.config().group().next().newPromise();
+        pending.addListener((Future<PooledConnection> f) -> {
+            if (!f.isSuccess()) {
+                promise.tryFailure(f.cause());
+                return;
+            }
+            f.getNow().openStream(streamHandler).addListener((Future<Http2StreamChannel> s) -> {
+                if (s.isSuccess()) {
+                    promise.trySuccess(s.getNow());
+                } else {
+                    promise.tryFailure(s.cause());
+                }
+            });
+        });
+        return promise;
+    }
+
+    /** 풀에 속한 커넥션 하나와 그 위의 활성 스트림 수 */
+    final class PooledConnection {
+        final Channel channel;
+        final Http2FrameCodec codec;
+        // null 이면 RTT 를 재지 않음
+        final PingKeepaliveHandler keepalive;
+        final AtomicInteger activeStreams = new AtomicInteger();
+        volatile boolean draining;
+
+        PooledConnection(Channel channel, Http2FrameCodec codec, PingKeepaliveHandler keepalive) {
+            this.channel = channel;
+            this.codec = codec;
+            this.keepalive = keepalive;
+        }
+
+        /** 새 스트림의 예상 대기 비용, (활성 스트림 수 + 1) x RTT */
+        long cost() {
+            long rtt = keepalive != null ? Math.max(MIN_RTT_NANOS, keepalive.effectiveRttNanos()) : MIN_RTT_NANOS;
+            return (activeStreams.get() + 1) * rtt;
+        }
+
+        boolean isUsable() {
+            return !draining && channel.isActive();
+        }
+
+        /** 상대가 알려준 SETTINGS_MAX_CONCURRENT_STREAMS 이내인지 */
+        boolean hasCapacity() {
+            return activeStreams.get() < codec.connection().local().maxActiveStreams();
+        }
+
+        Future<Http2StreamChannel> openStream(ChannelHandler streamHandler) {
+            activeStreams.incrementAndGet();
+            Future<Http2StreamChannel> f = new Http2StreamChannelBootstrap(channel)
+                .handler(new ChannelInitializer<Http2StreamChannel>() {
+                    @Override
+                    protected void initChannel(Http2StreamChannel ch) {
+                        ch.pipeline().addLast(new Http2CompressionHandler(compression, false), streamHandler);
+                    }
+                })
+                .open();
+            f.addListener((Future<Http2StreamChannel> opened) -> {
+                if (!opened.isSuccess()) {
+                    streamClosed();
+                    return;
+                }
+                opened.getNow().closeFuture().addListener(closeFuture -> streamClosed());
+            });
+            return f;
+        }
+
+        private void streamClosed() {
+            if (activeStreams.decrementAndGet() == 0 && draining) {
+                channel.close();
+            }
+        }
+
+        void goAway() {
+            draining = true;
+            connections.remove(this);
+            if (activeStreams.get() == 0) {
+                channel.close();
+            }
+        }
+    }
+
+    /** 부모 채널에서 GOAWAY 와 커넥션 종료를 감지해 풀 상태를 갱신 */
+    private final class ConnectionStateHandler extends ChannelInboundHandlerAdapter {
+        PooledConnection connection;
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            connection = new PooledConnection(ctx.channel(), ctx.pipeline().get(Http2FrameCodec.class),
+                ctx.pipeline().get(PingKeepaliveHandler.class));
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof Http2GoAwayFrame) {
+                connection.goAway();
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            if (evt instanceof PingKeepaliveHandler.AckTimeoutEvent) {
+                // 곧 닫히는 커넥션, 닫히기 전에 새 스트림이 붙지 않게 함
+                connection.draining = true;
+                connections.remove(connection);
+            }
+            ctx.fireUserEventTriggered(evt);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            connection.draining = true;
+            connections.remove(connection);
+            ctx.fireChannelInactive();
+        }
+    }
+}
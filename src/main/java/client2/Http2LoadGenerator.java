@@ -0,0 +1,147 @@
+package client2;
+
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.SystemPropertyUtil;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * h2c 부하 생성기. 기본 대상은 로컬 server2 (Http2MultiplexServer, 8444).
+ *
+ * <pre>
+ * -Dloadgen.host=127.0.0.1 -Dloadgen.port=8444 -Dloadgen.path=/test
+ * -Dloadgen.connections=4       커넥션 수
+ * -Dloadgen.streams=64          커넥션당 동시 스트림 수 (전체 동시 요청 = connections × streams)
+ * -Dloadgen.rate=0              초당 요청 수. 0 이면 closed-loop, 그 외에는 고정 도착률 open-loop
+ * -Dloadgen.warmup=5            워밍업(초), 이 구간의 측정값은 버림
+ * -Dloadgen.duration=30         측정(초)
+ * -Dloadgen.bodySize=64         요청 바디 크기(byte)
+ * </pre>
+ *
+ * open-loop 에서는 지연을 "보냈어야 할 시각"부터 재므로, 서버가 느려져 전송이 밀려도
+ * 그 대기 시간이 지연에 포함됩니다 (coordinated omission 보정).
+ */
+public final class Http2LoadGenerator {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Http2PureH2cClient client;
+    private final String path;
+    private final byte[] body;
+    private final int concurrency;
+    private final Recorder recorder = new Recorder(MAX_LATENCY_NANOS, 3);
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    Http2LoadGenerator(Http2PureH2cClient client, String path, byte[] body, int concurrency) {
+        this.client = client;
+        this.path = path;
+        this.body = body;
+        this.concurrency = concurrency;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String host = SystemPropertyUtil.get("loadgen.host", "127.0.0.1");
+        int port = SystemPropertyUtil.getInt("loadgen.port", 8444);
+        String path = SystemPropertyUtil.get("loadgen.path", "/test");
+        int connections = SystemPropertyUtil.getInt("loadgen.connections", 4);
+        int streams = SystemPropertyUtil.getInt("loadgen.streams", 64);
+        int rate = SystemPropertyUtil.getInt("loadgen.rate", 0);
+        int warmup = SystemPropertyUtil.getInt("loadgen.warmup", 5);
+        int duration = SystemPropertyUtil.getInt("loadgen.duration", 30);
+        int bodySize = SystemPropertyUtil.getInt("loadgen.bodySize", 64);
+
+        Http2PureH2cClient client = new Http2PureH2cClient(host, port, connections);
+        client.start();
+        client.connectAll();
+        try {
+            Http2LoadGenerator generator = new Http2LoadGenerator(client, path, jsonBody(bodySize), connections * streams);
+            System.out.printf("%s loop, %d connections x %d streams, rate=%s, warmup=%ds, duration=%ds%n",
+                rate > 0 ? "open" : "closed", connections, streams, rate > 0 ? rate + "/s" : "max", warmup, duration);
+
+            generator.run(rate, TimeUnit.SECONDS.toNanos(warmup));
+            generator.reset();
+            long start = System.nanoTime();
+            generator.run(rate, TimeUnit.SECONDS.toNanos(duration));
+            generator.report(System.nanoTime() - start);
+        } finally {
+            client.stop();
+        }
+    }
+
+    /** 지정한 시간 동안 부하를 주고, 보낸 요청이 모두 끝날 때까지 기다립니다. */
+    void run(int rate, long durationNanos) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        if (rate > 0) {
+            long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+            for (long i = 0; ; i++) {
+                long intended = start + i * interval;
+                if (intended >= end) {
+                    break;
+                }
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    LockSupport.parkNanos(intended - now);
+                }
+                // 동시 요청 상한에 걸리면 여기서 밀리지만, 지연은 intended 부터 측정됨
+                inFlight.acquire();
+                send(intended, inFlight);
+            }
+        } else {
+            while (System.nanoTime() < end) {
+                inFlight.acquire();
+                send(System.nanoTime(), inFlight);
+            }
+        }
+        // 남은 요청 완료 대기
+        inFlight.acquire(concurrency);
+    }
+
+    private void send(long startNanos, Semaphore inFlight) {
+        client.post(path, body).whenComplete((ignored, cause) -> {
+            if (cause == null) {
+                recorder.recordValue(Math.min(System.nanoTime() - startNanos, MAX_LATENCY_NANOS));
+                completed.increment();
+            } else {
+                errors.increment();
+            }
+            inFlight.release();
+        });
+    }
+
+    void reset() {
+        recorder.reset();
+        completed.reset();
+        errors.reset();
+    }
+
+    void report(long elapsedNanos) {
+        Histogram h = recorder.getIntervalHistogram();
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("requests: %d, errors: %d, elapsed: %.2fs, throughput: %.1f req/s%n",
+            completed.sum(), errors.sum(), seconds, completed.sum() / seconds);
+        System.out.printf("latency(ms) p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f%n",
+            millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+            millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)),
+            millis(h.getMaxValue()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static byte[] jsonBody(int size) {
+        StringBuilder sb = new StringBuilder("{\"data\":\"");
+        while (sb.length() < size - 2) {
+            sb.append('x');
+        }
+        return sb.append("\"}").toString().getBytes(CharsetUtil.UTF_8);
+    }
+}
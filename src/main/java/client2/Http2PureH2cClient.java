@@ -1,91 +1,198 @@
 package client2;
 
-import io.netty.bootstrap.Bootstrap;
+import common.BatchFlush;
+import common.Http2Tls;
+import common.RefusedStreamException;
+import common.Transport;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http2.*;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.CharsetUtil;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import javax.net.ssl.SSLException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public class Http2PureH2cClient {
+    // 스트림별 진행 로그, 이벤트 루프에서 동기 System.out 으로 찍으므로 기본은 끔 (디버깅 시 -Dhttp2.client.verbose=true)
+    private static final boolean VERBOSE = SystemPropertyUtil.getBoolean("http2.client.verbose", false);
+    // 서버가 처리하지 않은 요청(GOAWAY/REFUSED_STREAM)만 다른 커넥션으로 다시 보내는 횟수
+    private static final int RETRIES = SystemPropertyUtil.getInt("http2.client.retries", 1);
+
     private final String host;
     private final int port;
-    private Channel channel;
+    private final int maxConnections;
+    private Http2ConnectionPool pool;
     private EventLoopGroup group;
 
     public Http2PureH2cClient(String host, int port) {
+        this(host, port, 1);
+    }
+
+    /**
+     * @param maxConnections 스트림을 분산할 최대 커넥션 수
+     */
+    public Http2PureH2cClient(String host, int port, int maxConnections) {
         this.host = host;
         this.port = port;
+        this.maxConnections = maxConnections;
     }
 
     public void start() {
-        group = new NioEventLoopGroup();
-        Bootstrap b = new Bootstrap();
-        b.group(group)
-            .channel(NioSocketChannel.class)
-            .option(ChannelOption.SO_KEEPALIVE, true)
-            .handler(new ChannelInitializer<SocketChannel>() {
-                @Override
-                protected void initChannel(SocketChannel ch) {
-                    ChannelPipeline p = ch.pipeline();
-                    // 1) HTTP/2 프레임 코덱 (prior-knowledge h2c)
-                    p.addLast(Http2FrameCodecBuilder.forClient().build());
-                    // 2) 멀티플렉싱: 각 스트림별 Channel 생성
-                    p.addLast(new Http2MultiplexHandler(new StreamHandler()));
-                }
-            });
+        group = Transport.current().newEventLoopGroup(0);
+        SslContext sslContext;
+        try {
+            sslContext = Http2Tls.clientContextFromConfig();
+        } catch (SSLException e) {
+            throw new IllegalStateException("TLS setup failed", e);
+        }
+        pool = new Http2ConnectionPool(group, host, port, maxConnections, sslContext);
+        // 첫 커넥션은 미리 열어 연결 실패를 바로 알 수 있게 함
+        pool.connect().syncUninterruptibly();
+        System.out.println("Connected with " + (sslContext != null ? "HTTP/2 over TLS (h2)" : "HTTP/2 prior-knowledge (h2c)")
+            + " to " + host + ":" + port
+            + " (max " + maxConnections + " connections)");
+    }
 
-        channel = b.connect(host, port).syncUninterruptibly().channel();
-        System.out.println("Connected with HTTP/2 prior-knowledge (h2c) to " + host + ":" + port);
+    /** maxConnections 개의 커넥션을 모두 미리 엽니다 (부하 생성 시 커넥션 수 고정용). */
+    public void connectAll() {
+        while (pool.size() < maxConnections) {
+            pool.connect().syncUninterruptibly();
+        }
     }
 
     /**
-     * 동일 커넥션에서 비동기로 count 개의 POST 요청(헤더+바디)을 보냅니다.
-     * 각 스트림별 로그를 System.out 으로 출력합니다.
+     * 커넥션 풀에서 비동기로 count 개의 POST 요청(헤더+바디)을 한 배치로 보냅니다 ({@link #postBatch(String, List)} 와 같은 방식).
+     * 스트림은 가장 한가한 커넥션에 열리고, verbose 면 각 스트림별 로그를 System.out 으로 출력합니다.
+     *
+     * @return 모든 응답을 받으면 완료되는 future
      */
-    public void sendMultiplePosts(String path, String jsonBody, int count) {
-        Http2StreamChannelBootstrap bootstrap = new Http2StreamChannelBootstrap(channel);
+    public CompletableFuture<Void> sendMultiplePosts(String path, String jsonBody, int count) {
         System.out.println("Sending " + count + " POST requests with body to " + path);
+        byte[] body = jsonBody.getBytes(CharsetUtil.UTF_8);
 
+        BatchFlush batch = new BatchFlush(count);
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[count];
         for (int i = 0; i < count; i++) {
-            final int idx = i;
-            bootstrap.open().addListener(
-                (GenericFutureListener<Future<Channel>>) future -> {
-                    if (!future.isSuccess()) {
-                        System.err.println("[Stream-" + idx + "] open failed: " + future.cause());
-                        return;
+            responses[i] = send(path + "?req=" + i, body, VERBOSE ? "[Stream-" + i + "]" : null, batch);
+        }
+        return CompletableFuture.allOf(responses);
+    }
+
+    /**
+     * 로그 없이 POST 요청 하나를 보냅니다 (부하 생성용).
+     *
+     * @return 응답 END_STREAM 을 받으면 완료, 스트림 오류/리셋 시 예외로 완료되는 future
+     */
+    public CompletableFuture<Void> post(String path, byte[] body) {
+        return send(path, body, null, null);
+    }
+
+    /**
+     * 로그 없이 POST 요청 여러 개를 보냅니다. 스트림을 모두 열고 HEADERS/DATA 를 flush 없이 쓴 뒤
+     * 쓰인 커넥션마다 한 번만 flush 합니다 ({@link BatchFlush}).
+     *
+     * @return 바디 순서대로의 응답 future, 각각 {@link #post(String, byte[])} 와 같음
+     */
+    public List<CompletableFuture<Void>> postBatch(String path, List<byte[]> bodies) {
+        BatchFlush batch = new BatchFlush(bodies.size());
+        List<CompletableFuture<Void>> responses = new ArrayList<>(bodies.size());
+        for (byte[] body : bodies) {
+            responses.add(send(path, body, null, batch));
+        }
+        return responses;
+    }
+
+    /**
+     * 서버 drain 등으로 처리되지 않은 요청은 RETRIES 번까지 다시 보냅니다 ({@link RefusedStreamException}).
+     * 처리됐을 수 있는 실패는 재시도하지 않으므로 재시도로 부하가 불어나지 않습니다.
+     * 재시도는 배치와 관계없이 요청마다 바로 flush 합니다.
+     */
+    private CompletableFuture<Void> send(String path, byte[] body, String logPrefix, BatchFlush batch) {
+        return retryIfRefused(sendOnce(path, body, logPrefix, batch), path, body, logPrefix, RETRIES);
+    }
+
+    private CompletableFuture<Void> retryIfRefused(CompletableFuture<Void> attempt, String path, byte[] body,
+        String logPrefix, int retries) {
+        if (retries == 0) {
+            return attempt;
+        }
+        return attempt.handle((ignored, cause) -> {
+            if (cause == null || !RefusedStreamException.isRetryable(cause)) {
+                return attempt;
+            }
+            if (logPrefix != null) {
+                System.out.println(logPrefix + " not processed (" + cause + "), retrying");
+            }
+            return retryIfRefused(sendOnce(path, body, logPrefix, null), path, body, logPrefix, retries - 1);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * @param batch null 이면 요청마다 바로 flush
+     */
+    private CompletableFuture<Void> sendOnce(String path, byte[] body, String logPrefix, BatchFlush batch) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        pool.openStream(new StreamHandler(done, logPrefix)).addListener(
+            (GenericFutureListener<Future<Http2StreamChannel>>) future -> {
+                if (!future.isSuccess()) {
+                    if (logPrefix != null) {
+                        System.err.println(logPrefix + " open failed: " + future.cause());
                     }
-                    Channel streamCh = future.getNow();
-                    System.out.println("[Stream-" + idx + "] opened");
-
-                    // 1) HEADERS only (endStream=false)
-                    Http2Headers headers = new DefaultHttp2Headers()
-                        .method("POST")
-                        .scheme("http")
-                        .authority(host + ":" + port)
-                        .path(path + "?req=" + idx)
-                        .add("content-type", "application/json")
-                        .add("content-length", String.valueOf(jsonBody.getBytes().length));
-                    streamCh.write(new DefaultHttp2HeadersFrame(headers, false));
-                    System.out.println("[Stream-" + idx + "] sent HEADERS");
-
-                    // 2) DATA (endStream=true)
-                    ByteBuf content = Unpooled.copiedBuffer(jsonBody.getBytes());
-                    streamCh.writeAndFlush(new DefaultHttp2DataFrame(content, true));
-                    System.out.println("[Stream-" + idx + "] sent DATA and endStream");
+                    // 스트림을 열지 못했으면 아무것도 보내지 않은 것이므로 재시도 가능
+                    done.completeExceptionally(new RefusedStreamException("stream open failed", future.cause()));
+                    if (batch != null) {
+                        batch.failed();
+                    }
+                    return;
                 }
-            );
-        }
+                Channel streamCh = future.getNow();
+                if (logPrefix != null) {
+                    System.out.println(logPrefix + " opened");
+                }
+
+                // 1) HEADERS only (endStream=false)
+                Http2Headers headers = new DefaultHttp2Headers()
+                    .method("POST")
+                    .scheme(pool.scheme())
+                    .authority(host + ":" + port)
+                    .path(path)
+                    .add("content-type", "application/json")
+                    .add("content-length", String.valueOf(body.length));
+                streamCh.write(new DefaultHttp2HeadersFrame(headers, false))
+                    .addListener(RefusedStreamException.failIfNotSent(done));
+                if (logPrefix != null) {
+                    System.out.println(logPrefix + " wrote HEADERS");
+                }
+
+                // 2) DATA (endStream=true)
+                ByteBuf content = Unpooled.wrappedBuffer(body);
+                streamCh.write(new DefaultHttp2DataFrame(content, true));
+                if (batch != null) {
+                    batch.written(streamCh);
+                } else {
+                    streamCh.flush();
+                }
+                if (logPrefix != null) {
+                    System.out.println(logPrefix + " wrote DATA and endStream");
+                }
+            }
+        );
+        return done;
     }
 
     public void stop() {
-        if (channel != null) {
-            channel.close();
-            System.out.println("Main channel closed");
+        if (pool != null) {
+            pool.close();
+            System.out.println("Connection pool closed");
         }
         if (group != null) {
             group.shutdownGracefully();
@@ -93,55 +200,90 @@ public class Http2PureH2cClient {
         }
     }
 
-    public static void main(String[] args) throws InterruptedException {
+    public static void main(String[] args) {
         // 1) 접속할 호스트/포트
         Http2PureH2cClient client =
-            new Http2PureH2cClient("172.27.112.1", 30083);
+            new Http2PureH2cClient("172.27.112.1", 30083, 4);
         client.start();
 
         // 2) curl -d 로 보낸 JSON 페이로드
         String json = "{\"test1\":\"hello123\",\"test2\":\"world\"}";
 
         // 3) 멀티플렉싱 테스트: 여기서는 1개의 스트림으로 동일 요청을 보냄
-        client.sendMultiplePosts("/test", json, 1);
-
-        // 충분히 대기
-        Thread.sleep(5000);
-        client.stop();
+        //    (부하 측정은 Http2LoadGenerator 사용)
+        try {
+            client.sendMultiplePosts("/test", json, 1).join();
+        } finally {
+            client.stop();
+        }
     }
 
-    /** 스트림별 응답 처리 핸들러 */
-    private static class StreamHandler extends ChannelInitializer<Channel> {
+    /** 스트림별 응답 처리 핸들러. logPrefix 가 null 이면 로그를 남기지 않음 */
+    private static class StreamHandler extends SimpleChannelInboundHandler<Http2Frame> {
+        private final CompletableFuture<Void> done;
+        private final String logPrefix;
+        // 서버가 이 스트림을 처리하지 않았다고 알려옴 (GOAWAY, REFUSED_STREAM)
+        private boolean refused;
+
+        StreamHandler(CompletableFuture<Void> done, String logPrefix) {
+            this.done = done;
+            this.logPrefix = logPrefix;
+        }
+
         @Override
-        protected void initChannel(Channel ch) {
-            final String streamId = ch.id().asShortText();
-            ch.pipeline().addLast(new SimpleChannelInboundHandler<Http2Frame>() {
-                @Override
-                protected void channelRead0(ChannelHandlerContext ctx, Http2Frame frame) {
-                    if (frame instanceof Http2HeadersFrame) {
-                        Http2HeadersFrame hf = (Http2HeadersFrame) frame;
-                        System.out.println("[Stream-" + streamId + "] RECEIVED_HEADERS: " + hf.headers());
-                        if (hf.isEndStream()) {
-                            System.out.println("[Stream-" + streamId + "] END_OF_STREAM (headers-only)");
-                            ctx.close();
-                        }
-                    } else if (frame instanceof Http2DataFrame) {
-                        Http2DataFrame df = (Http2DataFrame) frame;
-                        String body = df.content().toString(io.netty.util.CharsetUtil.UTF_8);
-                        System.out.println("[Stream-" + streamId + "] RECEIVED_DATA: " + body);
-                        if (df.isEndStream()) {
-                            System.out.println("[Stream-" + streamId + "] END_OF_STREAM (data)");
-                            ctx.close();
-                        }
+        protected void channelRead0(ChannelHandlerContext ctx, Http2Frame frame) {
+            if (frame instanceof Http2HeadersFrame) {
+                Http2HeadersFrame hf = (Http2HeadersFrame) frame;
+                if (logPrefix != null) {
+                    System.out.println(logPrefix + " RECEIVED_HEADERS: " + hf.headers());
+                }
+                if (hf.isEndStream()) {
+                    if (logPrefix != null) {
+                        System.out.println(logPrefix + " END_OF_STREAM (headers-only)");
                     }
+                    done.complete(null);
+                    ctx.close();
+                }
+            } else if (frame instanceof Http2DataFrame) {
+                Http2DataFrame df = (Http2DataFrame) frame;
+                if (logPrefix != null) {
+                    System.out.println(logPrefix + " RECEIVED_DATA: " + df.content().toString(CharsetUtil.UTF_8));
                 }
-                @Override
-                public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-                    System.err.println("[Stream-" + streamId + "] error:");
-                    cause.printStackTrace();
+                if (df.isEndStream()) {
+                    if (logPrefix != null) {
+                        System.out.println(logPrefix + " END_OF_STREAM (data)");
+                    }
+                    done.complete(null);
                     ctx.close();
                 }
-            });
+            }
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (RefusedStreamException.isRefusal(evt)) {
+                refused = true;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            if (logPrefix != null) {
+                System.err.println(logPrefix + " error:");
+                cause.printStackTrace();
+            }
+            done.completeExceptionally(cause);
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            // END_STREAM 전에 닫힌 경우 (RST_STREAM, 커넥션 종료)
+            done.completeExceptionally(refused || RefusedStreamException.neverOpened(ctx.channel())
+                ? new RefusedStreamException("stream not processed by server")
+                : new ClosedChannelException());
+            super.channelInactive(ctx);
         }
     }
 }
@@ -1,15 +1,49 @@
 package client3;
 
+import common.BatchFlush;
+import common.Compression;
+import common.Http2CompressionHandler;
+import common.Http2Config;
+import common.Http2Tls;
+import common.PingKeepaliveHandler;
+import common.RefusedStreamException;
+import common.Transport;
+import common.WindowTuningHandler;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http2.*;
+import io.netty.handler.ssl.SslContext;
 import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.SystemPropertyUtil;
 
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * h2c(prior-knowledge) 또는 TLS(h2, ALPN) 비동기 클라이언트.
+ *
+ * <pre>
+ * Http2Client client = new Http2Client(host, port);                                  // h2c
+ * Http2Client client = new Http2Client(host, port, Http2Tls.clientContextFromConfig()); // -Dhttp2.tls=true 면 TLS
+ * client.connect();
+ * client.send(Http2Request.post("/path", body, "application/json"))
+ *     .thenAccept(res -> { try { ... res.contentAsString() ... } finally { res.release(); } });
+ * client.sendBatch(Arrays.asList(req1, req2, req3));   // fan-out, 한 번의 flush
+ * </pre>
+ *
+ * 반환된 future 는 커넥션의 이벤트 루프에서 완료되므로 콜백에서 블로킹 작업을 하면 안 됩니다.
+ */
 public class Http2Client {
 
     // 대상 서버 정보 및 요청 바디
@@ -38,92 +72,329 @@ public class Http2Client {
 
     private static final String[] paths = {PATH1, PATH2, /*PATH3*/};
     private static final String[] bodys = {BODY1, BODY2, /*BODY3*/};
+    // 바디는 content-type 의 charset 으로 인코딩 (BODY2 는 XML 선언대로 EUC-KR)
+    private static final String[] contentTypes = {"application/json", "application/xml; charset=EUC-KR", /*"text/plain"*/};
 
 
-    public static void main(String[] args) throws Exception {
-        EventLoopGroup group = new NioEventLoopGroup();
-        try {
-            Bootstrap bootstrap = new Bootstrap();
-            bootstrap.group(group)
-                .channel(NioSocketChannel.class)
-                .option(ChannelOption.SO_KEEPALIVE, true)
-                .handler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel ch) {
-                        Http2FrameCodec codec = Http2FrameCodecBuilder.forClient().build();
-                        ch.pipeline().addLast(codec);
-                        ch.pipeline().addLast(new Http2MultiplexHandler(new SimpleChannelInboundHandler<Http2Frame>() {
-                            @Override protected void channelRead0(ChannelHandlerContext ctx, Http2Frame frame) {}
-                        }));
+    // 서버가 처리하지 않은 요청(GOAWAY/REFUSED_STREAM)만 새 커넥션으로 다시 보내는 횟수
+    private static final int RETRIES = SystemPropertyUtil.getInt("http2.client.retries", 1);
+
+    private final String host;
+    private final int port;
+    private final EventLoopGroup group;
+    // null 이면 h2c
+    private final SslContext sslContext;
+    // 스트림마다 붙이는 content-encoding 코덱 설정
+    private final Compression compression = Compression.fromSystemProperties();
+    private final Bootstrap bootstrap;
+    // 새 스트림을 열 커넥션, this 로 보호
+    private Future<Channel> connection;
+
+    public Http2Client(String host, int port) {
+        this(host, port, null);
+    }
+
+    /**
+     * @param sslContext TLS 로 연결할 때의 클라이언트 SslContext ({@link Http2Tls#clientContext()}), null 이면 h2c
+     */
+    public Http2Client(String host, int port, SslContext sslContext) {
+        this.host = host;
+        this.port = port;
+        this.sslContext = sslContext;
+        this.group = Transport.current().newEventLoopGroup(0);
+        this.bootstrap = Transport.current().configure(new Bootstrap().group(group))
+            .option(ChannelOption.SO_KEEPALIVE, true)
+            .handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    if (sslContext != null) {
+                        // host/port 를 넘겨야 재접속 시 세션이 재개됨, 코덱이 보내는 preface 는 핸드셰이크 후 전송됨
+                        ch.pipeline().addLast(sslContext.newHandler(ch.alloc(), host, port));
                     }
-                });
+                    Http2Settings settings = Http2Config.settings();
+                    // 서버의 SETTINGS_MAX_CONCURRENT_STREAMS 를 넘는 스트림은 에러 대신 자리가 날 때까지 버퍼링
+                    Http2FrameCodec codec = Http2FrameCodecBuilder.forClient()
+                        .initialSettings(settings)
+                        .headerSensitivityDetector(Http2Config.sensitivityDetector())
+                        .encoderEnforceMaxConcurrentStreams(true)
+                        .build();
+                    ch.pipeline().addLast(codec);
+                    WindowTuningHandler windowTuning = WindowTuningHandler.fromConfig(settings);
+                    if (windowTuning != null) {
+                        ch.pipeline().addLast(windowTuning);
+                    }
+                    PingKeepaliveHandler keepalive = PingKeepaliveHandler.fromConfig();
+                    if (keepalive != null) {
+                        // PING ACK 가 오지 않으면 커넥션을 닫음 (ConnectionStateHandler 가 retire, 다음 요청은 새 커넥션)
+                        ch.pipeline().addLast(keepalive);
+                    }
+                    ch.pipeline().addLast(new ConnectionStateHandler());
+                    ch.pipeline().addLast(new Http2MultiplexHandler(new SimpleChannelInboundHandler<Http2Frame>() {
+                        @Override protected void channelRead0(ChannelHandlerContext ctx, Http2Frame frame) {}
+                    }));
+                }
+            });
+    }
 
-            System.out.println("create bootstrap");
-            Channel parent = bootstrap.connect(HOST, PORT).sync().channel();
-            System.out.println("h2c connected.");
+    /** 연결하고, TLS 면 ALPN 으로 h2 가 협상될 때까지 기다립니다. */
+    public void connect() throws InterruptedException {
+        connection().sync();
+    }
 
-            int numRequests = 1;  // 병렬 요청 개수
-            for (int i = 1; i <= numRequests; i++) {
-                int idx = i;
-                // 스트림 채널 열기
-                Http2StreamChannelBootstrap sb = new Http2StreamChannelBootstrap(parent);
-                sb.handler(new ChannelInitializer<Http2StreamChannel>() {
+    /**
+     * 현재 커넥션. 없거나 GOAWAY 를 받았거나 끊겼으면 새로 연결합니다 (연결은 블로킹하지 않음).
+     * GOAWAY 를 받은 커넥션은 남은 스트림을 마저 받고, 서버가 닫으면 닫힙니다.
+     */
+    private synchronized Future<Channel> connection() {
+        if (connection != null && (!connection.isDone() || connection.isSuccess())) {
+            return connection;
+        }
+        ChannelFuture cf = bootstrap.connect(host, port);
+        Promise<Channel> promise = cf.channel().eventLoop().newPromise();
+        cf.addListener((ChannelFuture f) -> {
+            if (!f.isSuccess()) {
+                promise.tryFailure(f.cause());
+                return;
+            }
+            // connect 리스너는 channelActive(코덱의 preface 전송) 전에 불리므로 그 뒤에 스트림을 열도록 미룸
+            f.channel().eventLoop().execute(() -> Http2Tls.negotiated(f.channel()).addListener((Future<Channel> n) -> {
+                if (n.isSuccess()) {
+                    promise.trySuccess(n.getNow());
+                } else {
+                    promise.tryFailure(n.cause());
+                }
+            }));
+        });
+        connection = promise;
+        return promise;
+    }
+
+    /** 연결된 현재 커넥션의 채널, 연결 중이거나 없으면 null (TLS 협상 결과 확인용) */
+    synchronized Channel channel() {
+        return connection != null && connection.isSuccess() ? connection.getNow() : null;
+    }
+
+    /** GOAWAY 를 받았거나 닫힌 커넥션을 새 스트림 대상에서 뺌 */
+    private synchronized void retire(Channel channel) {
+        if (connection != null && connection.isSuccess() && connection.getNow() == channel) {
+            connection = null;
+        }
+    }
+
+    /**
+     * 새 스트림에 요청을 보내고 응답 전체를 받으면 완료되는 future 를 반환합니다.
+     * 스트림 생성은 블로킹하지 않으며, 응답 바디는 풀링된 버퍼이므로 사용 후 release 해야 합니다.
+     * 서버가 처리하지 않은 요청(drain 중 GOAWAY 등, {@link RefusedStreamException})은 새 커넥션으로 RETRIES 번까지 다시 보냅니다.
+     */
+    public CompletableFuture<Http2Response> send(Http2Request request) {
+        Http2Headers headers = requestHeaders(request);
+        ByteBuf body = request.body();
+        CompletableFuture<Http2Response> result = new CompletableFuture<>();
+        sendOnce(headers, body.retainedDuplicate(), result, null);
+        return retryIfRefused(result, headers, body, RETRIES);
+    }
+
+    /**
+     * 요청 여러 개를 한 커넥션에 한꺼번에 보냅니다 (한 요청이 여러 upstream 호출로 퍼지는 fan-out 용).
+     * 스트림을 블로킹 없이 모두 열고 HEADERS/DATA 를 쓴 뒤 마지막에 한 번만 flush 합니다 ({@link BatchFlush}).
+     *
+     * @return 요청 순서대로의 응답 future, 재시도와 응답 바디 release 는 {@link #send(Http2Request)} 와 같음
+     */
+    public List<CompletableFuture<Http2Response>> sendBatch(List<Http2Request> requests) {
+        List<CompletableFuture<Http2Response>> results = new ArrayList<>(requests.size());
+        if (requests.isEmpty()) {
+            return results;
+        }
+        BatchFlush batch = new BatchFlush(requests.size());
+        for (Http2Request request : requests) {
+            Http2Headers headers = requestHeaders(request);
+            ByteBuf body = request.body();
+            CompletableFuture<Http2Response> result = new CompletableFuture<>();
+            sendOnce(headers, body.retainedDuplicate(), result, batch);
+            results.add(retryIfRefused(result, headers, body, RETRIES));
+        }
+        return results;
+    }
+
+    private Http2Headers requestHeaders(Http2Request request) {
+        return request.headers()
+            .scheme(sslContext != null ? "https" : "http")
+            .authority(host + ":" + port);
+    }
+
+    /** 처리되지 않은 요청이면 다시 보내고, 마지막 시도가 끝나면 원본 바디를 해제 (시도마다 retainedDuplicate 로 보냄) */
+    private CompletableFuture<Http2Response> retryIfRefused(CompletableFuture<Http2Response> attempt,
+        Http2Headers headers, ByteBuf body, int retries) {
+        CompletableFuture<Http2Response> result = retries == 0 ? attempt
+            : attempt.handle((response, cause) -> {
+                if (cause == null || !RefusedStreamException.isRetryable(cause)) {
+                    return attempt;
+                }
+                CompletableFuture<Http2Response> retry = new CompletableFuture<>();
+                body.retain();
+                sendOnce(headers, body.retainedDuplicate(), retry, null);
+                return retryIfRefused(retry, headers, body, retries - 1);
+            }).thenCompose(Function.identity());
+        result.whenComplete((response, cause) -> body.release());
+        return result;
+    }
+
+    /**
+     * 커넥션을 골라 스트림을 열고 요청을 씁니다.
+     *
+     * @param batch null 이면 바로 flush, 아니면 배치의 요청을 모두 쓴 뒤 한 번에 flush
+     */
+    private void sendOnce(Http2Headers headers, ByteBuf body, CompletableFuture<Http2Response> result, BatchFlush batch) {
+        connection().addListener((Future<Channel> c) -> {
+            if (!c.isSuccess()) {
+                body.release();
+                result.completeExceptionally(c.cause());
+                if (batch != null) {
+                    batch.failed();
+                }
+                return;
+            }
+            Channel channel = c.getNow();
+            if (channel.pipeline().get(Http2FrameCodec.class).connection().goAwayReceived()) {
+                // 커넥션을 고른 뒤 GOAWAY 가 왔으면 그 커넥션에는 새 스트림을 열지 않음
+                retire(channel);
+                sendOnce(headers, body, result, batch);
+                return;
+            }
+            new Http2StreamChannelBootstrap(channel)
+                .handler(new ChannelInitializer<Http2StreamChannel>() {
                     @Override
                     protected void initChannel(Http2StreamChannel ch) {
-                        // 스트림 전용 핸들러에 콜백 주입
-                        ch.pipeline().addLast(new ResponseHandler((headers, body) -> {
-                            System.out.println("\n[Stream " + idx + "] Response:");
-                            System.out.println("status : " + headers.status());
-//                            headers.forEach(h -> System.out.println(h.getKey() + ": " + h.getValue()));
-                            System.out.println("Body: " + (body.isEmpty() ? "[없음]" : body));
-                        }));
+                        ch.pipeline().addLast(new Http2CompressionHandler(compression, false), new ResponseHandler(result));
+                    }
+                })
+                .open()
+                .addListener((Future<Http2StreamChannel> f) -> {
+                    if (!f.isSuccess()) {
+                        body.release();
+                        // 스트림을 열지 못했으면 아무것도 보내지 않은 것이므로 재시도 가능
+                        result.completeExceptionally(new RefusedStreamException("stream open failed", f.cause()));
+                        if (batch != null) {
+                            batch.failed();
+                        }
+                        return;
+                    }
+                    Http2StreamChannel stream = f.getNow();
+                    ChannelFuture sent;
+                    if (body.isReadable()) {
+                        sent = stream.write(new DefaultHttp2HeadersFrame(headers, false));
+                        stream.write(new DefaultHttp2DataFrame(body, true));
+                    } else {
+                        body.release();
+                        sent = stream.write(new DefaultHttp2HeadersFrame(headers, true));
+                    }
+                    sent.addListener(RefusedStreamException.failIfNotSent(result));
+                    if (batch != null) {
+                        batch.written(stream);
+                    } else {
+                        stream.flush();
                     }
                 });
-                Http2StreamChannel stream = (Http2StreamChannel) sb.open().sync().getNow();
+        });
+    }
 
-                // 요청 헤더/바디 구성
-                Http2Headers h2 = new DefaultHttp2Headers()
-                    .method(METHOD).path(paths[i%2-1])
-                    .scheme("http").authority(HOST + ":" + PORT)
-                    .add("content-type", "application/json");
+    public void close() throws InterruptedException {
+        Future<Channel> c;
+        synchronized (this) {
+            c = connection;
+            connection = null;
+        }
+        try {
+            if (c != null && c.isSuccess()) {
+                c.getNow().close().sync();
+            }
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Http2Client client = new Http2Client(HOST, PORT, Http2Tls.clientContextFromConfig());
+        try {
+            System.out.println("create bootstrap");
+            client.connect();
+            System.out.println(client.sslContext != null ? "h2 (TLS) connected." : "h2c connected.");
 
-                stream.write(new DefaultHttp2HeadersFrame(h2, false));
-                stream.writeAndFlush(new DefaultHttp2DataFrame(
-                    Unpooled.copiedBuffer(bodys[i%2-1], CharsetUtil.UTF_8), true));
+            int numRequests = 1;  // 병렬 요청 개수 (한 번에 flush)
+            List<Http2Request> requests = new ArrayList<>();
+            for (int i = 1; i <= numRequests; i++) {
+                String body = bodys[(i - 1) % bodys.length];
+                String contentType = contentTypes[(i - 1) % contentTypes.length];
+                requests.add(Http2Request.of(METHOD, paths[(i - 1) % paths.length],
+                        Unpooled.copiedBuffer(body, HttpUtil.getCharset(contentType, CharsetUtil.UTF_8)))
+                    .header("content-type", contentType));
+            }
 
-                System.out.println("[Stream " + idx + "] Request sent.");
+            List<CompletableFuture<Http2Response>> responses = client.sendBatch(requests);
+            System.out.println(numRequests + " requests sent.");
+            List<CompletableFuture<Void>> done = new ArrayList<>();
+            for (int i = 1; i <= numRequests; i++) {
+                int idx = i;
+                done.add(responses.get(i - 1).handle((response, cause) -> {
+                    if (cause != null) {
+                        System.err.println("[Stream " + idx + "] failed: " + cause);
+                        return null;
+                    }
+                    try {
+                        System.out.println("\n[Stream " + idx + "] Response:");
+                        System.out.println("status : " + response.status());
+                        System.out.println("Body: " + (response.content().isReadable() ? response.contentAsString() : "[없음]"));
+                    } finally {
+                        response.release();
+                    }
+                    return null;
+                }));
             }
 
-            // (원한다면 적절히 종료 로직 추가)
-             Thread.sleep(3000); parent.close().sync();
+            CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).join();
         } finally {
             // 나중에 반드시 종료
-             group.shutdownGracefully();
+            client.close();
         }
     }
 
-    public interface ResponseCallback {
-        /**
-         * @param headers  :status 등 응답 헤더 전체
-         * @param body     바디 문자열 (완전한 응답 본문)
-         */
-        void onResponse(Http2Headers headers, String body);
+    /** GOAWAY 를 받거나 끊긴 커넥션을 새 스트림 대상에서 뺌 (닫는 것은 남은 응답을 다 보낸 서버가 함) */
+    private final class ConnectionStateHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            boolean goAway = msg instanceof Http2GoAwayFrame;
+            ctx.fireChannelRead(msg);
+            if (goAway) {
+                retire(ctx.channel());
+            }
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            if (evt instanceof PingKeepaliveHandler.AckTimeoutEvent) {
+                // 곧 닫히는 커넥션, 닫히기 전에 새 요청이 붙지 않게 함
+                retire(ctx.channel());
+            }
+            ctx.fireUserEventTriggered(evt);
+        }
 
-        /**
-         * 예외 발생 시 호출
-         */
-        default void onError(Throwable cause) {
-            cause.printStackTrace();
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            retire(ctx.channel());
+            ctx.fireChannelInactive();
         }
     }
 
+    /** 스트림 하나의 응답 헤더/바디를 모아 future 를 완료 */
     private static class ResponseHandler extends ChannelInboundHandlerAdapter {
-        private final ResponseCallback callback;
-        private final StringBuilder bodyBuf = new StringBuilder();
+        private final CompletableFuture<Http2Response> result;
         private Http2Headers responseHeaders;
+        private CompositeByteBuf body;
+        // 서버가 이 스트림을 처리하지 않았다고 알려옴 (GOAWAY, REFUSED_STREAM)
+        private boolean refused;
 
-        public ResponseHandler(ResponseCallback callback) {
-            this.callback = callback;
+        ResponseHandler(CompletableFuture<Http2Response> result) {
+            this.result = result;
         }
 
         @Override
@@ -134,24 +405,64 @@ public class Http2Client {
                     if (responseHeaders == null) {
                         responseHeaders = hf.headers();
                     } else {
+                        // trailers
                         responseHeaders.add(hf.headers());
                     }
                     if (hf.isEndStream()) {
-                        callback.onResponse(responseHeaders, "");
+                        complete(ctx);
                     }
-                }
-                else if (msg instanceof Http2DataFrame) {
+                } else if (msg instanceof Http2DataFrame) {
                     Http2DataFrame df = (Http2DataFrame) msg;
-                    bodyBuf.append(df.content().toString(CharsetUtil.UTF_8));
+                    if (df.content().isReadable()) {
+                        if (body == null) {
+                            body = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+                        }
+                        // 프레임 버퍼를 복사하지 않고 그대로 이어 붙임 (디코딩은 Http2Response 에서 필요할 때만)
+                        body.addComponent(true, df.content().retain());
+                    }
                     if (df.isEndStream()) {
-                        callback.onResponse(responseHeaders, bodyBuf.toString());
+                        complete(ctx);
                     }
                 }
-            } catch (Throwable t) {
-                callback.onError(t);
             } finally {
                 ReferenceCountUtil.release(msg);
             }
         }
+
+        private void complete(ChannelHandlerContext ctx) {
+            ByteBuf content = body == null ? Unpooled.EMPTY_BUFFER : body;
+            body = null;
+            if (!result.complete(new Http2Response(responseHeaders, content))) {
+                content.release();
+            }
+            ctx.close();
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (RefusedStreamException.isRefusal(evt)) {
+                refused = true;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            result.completeExceptionally(cause);
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            // END_STREAM 전에 스트림이 닫힘 (RST_STREAM, 커넥션 종료 등)
+            if (body != null) {
+                body.release();
+                body = null;
+            }
+            result.completeExceptionally(refused || RefusedStreamException.neverOpened(ctx.channel())
+                ? new RefusedStreamException("stream not processed by server")
+                : new ClosedChannelException());
+            super.channelInactive(ctx);
+        }
     }
 }
@@ -0,0 +1,47 @@
+package client3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.AsciiString;
+
+/**
+ * {@link Http2Client#send(Http2Request)} 로 보낼 요청.
+ * 바디 ByteBuf 의 소유권은 send() 호출 시 클라이언트로 넘어갑니다 (전송 후 해제됨).
+ */
+public final class Http2Request {
+    private final Http2Headers headers;
+    private final ByteBuf body;
+
+    private Http2Request(CharSequence method, CharSequence path, ByteBuf body) {
+        this.headers = new DefaultHttp2Headers().method(method).path(path);
+        this.body = body;
+    }
+
+    public static Http2Request get(CharSequence path) {
+        return new Http2Request("GET", path, Unpooled.EMPTY_BUFFER);
+    }
+
+    public static Http2Request post(CharSequence path, ByteBuf body, CharSequence contentType) {
+        return new Http2Request("POST", path, body).header("content-type", contentType);
+    }
+
+    public static Http2Request of(CharSequence method, CharSequence path, ByteBuf body) {
+        return new Http2Request(AsciiString.of(method).toUpperCase(), path, body);
+    }
+
+    public Http2Request header(CharSequence name, CharSequence value) {
+        headers.add(name, value);
+        return this;
+    }
+
+    /** :scheme/:authority 는 클라이언트가 채웁니다. */
+    public Http2Headers headers() {
+        return headers;
+    }
+
+    public ByteBuf body() {
+        return body;
+    }
+}
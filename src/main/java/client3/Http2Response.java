@@ -0,0 +1,72 @@
+package client3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.CharsetUtil;
+
+import java.nio.charset.Charset;
+
+/**
+ * 응답 헤더와 (풀링된) 응답 바디. DATA 프레임 버퍼를 복사 없이 이어 붙인 그대로이며,
+ * 다 쓴 뒤에는 반드시 {@link #release()} 해야 합니다.
+ */
+public final class Http2Response extends DefaultByteBufHolder {
+    private final Http2Headers headers;
+
+    Http2Response(Http2Headers headers, ByteBuf content) {
+        super(content);
+        this.headers = headers;
+    }
+
+    public Http2Headers headers() {
+        return headers;
+    }
+
+    public int status() {
+        CharSequence status = headers.status();
+        return status == null ? 0 : Integer.parseInt(status.toString());
+    }
+
+    /** content-type 의 charset 파라미터 (없으면 UTF-8) */
+    public Charset charset() {
+        CharSequence contentType = headers.get(HttpHeaderNames.CONTENT_TYPE);
+        return contentType == null ? CharsetUtil.UTF_8 : HttpUtil.getCharset(contentType, CharsetUtil.UTF_8);
+    }
+
+    /** 필요할 때만 바디 전체를 한 번에 디코딩 (프레임 경계에 걸친 멀티바이트 문자도 안전) */
+    public String contentAsString() {
+        return content().toString(charset());
+    }
+
+    @Override
+    public Http2Response replace(ByteBuf content) {
+        return new Http2Response(headers, content);
+    }
+
+    @Override
+    public Http2Response retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public Http2Response retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public Http2Response touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public Http2Response touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+}
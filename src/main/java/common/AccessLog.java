@@ -0,0 +1,259 @@
+package common;
+
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.MathUtil;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 요청당 한 줄의 비동기 액세스 로그.
+ *
+ * I/O 스레드는 자기 전용 링 버퍼(단일 생산자/단일 소비자)의 미리 할당된 엔트리에 값과 참조만 채우고 바로 돌아갑니다.
+ * 문자열 조립과 파일 쓰기는 백그라운드 writer 스레드가 모든 링을 돌며 배치로 처리합니다.
+ * 링이 가득 차면 I/O 스레드를 막지 않고 그 엔트리를 버리며, 버린 수는 로그에 따로 남깁니다.
+ * 링에 남은 엔트리는 서버가 drain 을 마친 뒤 {@link #close()} 로 기록합니다
+ * (별도 shutdown hook 으로 닫으면 drain 중인 요청의 로그가 빠짐).
+ *
+ * <pre>
+ * -Dhttp2.accessLog=stdout|off|파일경로   (기본 stdout)
+ * -Dhttp2.accessLog.sample=1              N 요청마다 1개만 기록 (스레드별 카운터)
+ * -Dhttp2.accessLog.bufferSize=8192       스레드별 링 크기 (2의 거듭제곱으로 올림)
+ * </pre>
+ *
+ * 출력 형식: {@code 시각 connection stream method path status in=요청바이트 out=응답바이트 처리시간us}
+ */
+public final class AccessLog {
+
+    private static final AccessLog INSTANCE = fromSystemProperties();
+
+    private static final long BATCH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long DROP_REPORT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Writer out;
+    private final int sample;
+    private final int bufferSize;
+    private final List<Ring> rings = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    private final FastThreadLocal<Ring> localRing = new FastThreadLocal<Ring>() {
+        @Override
+        protected Ring initialValue() {
+            Ring ring = new Ring(bufferSize);
+            rings.add(ring);
+            return ring;
+        }
+    };
+    private volatile boolean closed;
+    private final Thread writer;
+
+    private AccessLog(Writer out, int sample, int bufferSize) {
+        this.out = out;
+        this.sample = sample;
+        this.bufferSize = MathUtil.findNextPositivePowerOfTwo(bufferSize);
+        if (out == null) {
+            writer = null;
+            return;
+        }
+        writer = new Thread(this::writeLoop, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static AccessLog instance() {
+        return INSTANCE;
+    }
+
+    private static AccessLog fromSystemProperties() {
+        String target = SystemPropertyUtil.get("http2.accessLog", "stdout");
+        int sample = Math.max(1, SystemPropertyUtil.getInt("http2.accessLog.sample", 1));
+        int bufferSize = Math.max(2, SystemPropertyUtil.getInt("http2.accessLog.bufferSize", 8192));
+        Writer out;
+        try {
+            if ("off".equals(target)) {
+                out = null;
+            } else if ("stdout".equals(target)) {
+                out = new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8);
+            } else {
+                out = Files.newBufferedWriter(Paths.get(target), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+            }
+        } catch (IOException e) {
+            System.err.println("[WARN] access log disabled, cannot open " + target + ": " + e);
+            out = null;
+        }
+        return new AccessLog(out == null ? null : new BufferedWriter(out, 64 * 1024), sample, bufferSize);
+    }
+
+    public boolean isEnabled() {
+        return out != null;
+    }
+
+    /**
+     * 응답을 쓴 I/O 스레드에서 호출. 헤더 객체는 복사하지 않고 참조만 보관하므로 호출 후 변경하면 안 됩니다.
+     *
+     * @param startNanos 요청 헤더를 받은 시각 ({@link System#nanoTime()})
+     */
+    public void log(Channel connection, int streamId, Http2Headers request, Http2Headers response,
+        long requestBytes, long responseBytes, long startNanos) {
+        if (out == null) {
+            return;
+        }
+        Ring ring = localRing.get();
+        if (sample > 1 && ring.sampleCounter++ % sample != 0) {
+            return;
+        }
+        long tail = ring.tail.get();
+        if (tail - ring.head.get() >= ring.entries.length) {
+            dropped.increment();
+            return;
+        }
+        Entry e = ring.entries[(int) tail & ring.mask];
+        e.timeMillis = System.currentTimeMillis();
+        e.durationNanos = System.nanoTime() - startNanos;
+        e.connection = connection;
+        e.streamId = streamId;
+        e.method = request.method();
+        e.path = request.path();
+        e.status = response.status();
+        e.requestBytes = requestBytes;
+        e.responseBytes = responseBytes;
+        ring.tail.lazySet(tail + 1);
+    }
+
+    private void writeLoop() {
+        long lastDropReport = System.nanoTime();
+        while (!closed) {
+            try {
+                boolean wrote = drain();
+                long now = System.nanoTime();
+                if (now - lastDropReport >= DROP_REPORT_NANOS) {
+                    lastDropReport = now;
+                    wrote |= reportDropped();
+                }
+                if (wrote) {
+                    out.flush();
+                }
+                // 바쁠 때도 매번 쉬어서 한 번에 큰 배치로 모아 씀 (링 크기 / 주기 만큼은 버리지 않고 버팀)
+                LockSupport.parkNanos(BATCH_INTERVAL_NANOS);
+            } catch (IOException e) {
+                System.err.println("[WARN] access log write failed: " + e);
+                LockSupport.parkNanos(DROP_REPORT_NANOS);
+            }
+        }
+    }
+
+    /** 모든 링의 엔트리를 기록. 하나라도 썼으면 true */
+    private boolean drain() throws IOException {
+        boolean wrote = false;
+        StringBuilder line = new StringBuilder(256);
+        for (Ring ring : rings) {
+            long head = ring.head.get();
+            long tail = ring.tail.get();
+            for (; head < tail; head++) {
+                Entry e = ring.entries[(int) head & ring.mask];
+                line.setLength(0);
+                line.append(Instant.ofEpochMilli(e.timeMillis)).append(' ')
+                    .append(connectionId(e.connection)).append(' ')
+                    .append(e.streamId).append(' ')
+                    .append(e.method).append(' ')
+                    .append(e.path).append(' ')
+                    .append(e.status)
+                    .append(" in=").append(e.requestBytes)
+                    .append(" out=").append(e.responseBytes)
+                    .append(' ').append(TimeUnit.NANOSECONDS.toMicros(e.durationNanos)).append("us\n");
+                out.append(line);
+                e.clear();
+                wrote = true;
+            }
+            ring.head.lazySet(head);
+        }
+        return wrote;
+    }
+
+    private boolean reportDropped() throws IOException {
+        long n = dropped.sumThenReset();
+        if (n == 0) {
+            return false;
+        }
+        out.append("# access log buffer full, dropped ").append(Long.toString(n)).append(" entries\n");
+        return true;
+    }
+
+    /** 스트림 채널이면 부모(TCP 커넥션) id 로 기록해 같은 커넥션의 요청을 묶어 볼 수 있게 함 */
+    private static String connectionId(Channel channel) {
+        // 일반 소켓 채널의 parent 는 서버(listen) 채널이므로 스트림 채널일 때만 올라감
+        Channel connection = channel instanceof Http2StreamChannel ? channel.parent() : channel;
+        return connection.id().asShortText();
+    }
+
+    /** writer 를 멈추고 남은 엔트리를 모두 기록 */
+    public void close() {
+        if (out == null || closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(1));
+            drain();
+            reportDropped();
+            out.flush();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("[WARN] access log close failed: " + e);
+        }
+    }
+
+    /** I/O 스레드 하나가 쓰고 writer 하나가 읽는 링 버퍼 */
+    private static final class Ring {
+        final Entry[] entries;
+        final int mask;
+        final AtomicLong head = new AtomicLong();   // writer 가 다음에 읽을 위치
+        final AtomicLong tail = new AtomicLong();   // I/O 스레드가 다음에 쓸 위치
+        int sampleCounter;                          // I/O 스레드 전용
+
+        Ring(int size) {
+            entries = new Entry[size];
+            for (int i = 0; i < size; i++) {
+                entries[i] = new Entry();
+            }
+            mask = size - 1;
+        }
+    }
+
+    private static final class Entry {
+        long timeMillis;
+        long durationNanos;
+        Channel connection;
+        int streamId;
+        CharSequence method;
+        CharSequence path;
+        CharSequence status;
+        long requestBytes;
+        long responseBytes;
+
+        void clear() {
+            connection = null;
+            method = null;
+            path = null;
+            status = null;
+        }
+    }
+}
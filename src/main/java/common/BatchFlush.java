@@ -0,0 +1,43 @@
+package common;
+
+import io.netty.channel.Channel;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 요청 배치의 flush 를 모아 한 번에 내보냅니다 (클라이언트).
+ * 스트림 채널의 write 는 바로 부모 채널(커넥션)의 코덱으로 내려가므로, 배치의 요청을 flush 없이 모두 쓴 뒤
+ * 쓰인 커넥션마다 한 번만 flush 하면 HEADERS/DATA 가 모두 나갑니다. 요청 수만큼 syscall 과 TCP 세그먼트가 늘지 않습니다.
+ * 스트림이 여러 커넥션(이벤트 루프)에 열려도 되며, 마지막 요청을 처리한 스레드가 flush 합니다.
+ */
+public final class BatchFlush {
+
+    private final AtomicInteger remaining;
+    private final Set<Channel> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param size 배치의 요청 수, 요청마다 {@link #written(Channel)} 이나 {@link #failed()} 를 정확히 한 번 호출해야 함
+     */
+    public BatchFlush(int size) {
+        remaining = new AtomicInteger(size);
+    }
+
+    /** 요청 하나를 flush 없이 씀 */
+    public void written(Channel stream) {
+        connections.add(stream.parent() != null ? stream.parent() : stream);
+        countDown();
+    }
+
+    /** 요청 하나를 보내지 못함 (스트림을 열지 못함 등) */
+    public void failed() {
+        countDown();
+    }
+
+    private void countDown() {
+        if (remaining.decrementAndGet() == 0) {
+            connections.forEach(Channel::flush);
+        }
+    }
+}
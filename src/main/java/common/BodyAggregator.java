@@ -0,0 +1,101 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * {@link RequestHandler} 를 {@link StreamingRequestHandler} 로 쓰기 위한 어댑터.
+ * 바디를 CompositeByteBuf 에 복사 없이 모은 뒤 END_STREAM 에서 {@link RequestExecutor} 로 핸들러를 실행합니다.
+ * 바디가 maxContentLength 를 넘으면 {@link TooLongFrameException} 으로 실패시켜 413 으로 응답하게 합니다.
+ *
+ * <pre>
+ * -Dhttp2.maxContentLength=8388608    요청 바디 상한 (bytes)
+ * </pre>
+ */
+public final class BodyAggregator implements StreamingRequestHandler {
+
+    private final RequestHandler handler;
+    private final RequestExecutor executor;
+    private final int maxContentLength;
+
+    public BodyAggregator(RequestHandler handler, RequestExecutor executor, int maxContentLength) {
+        if (maxContentLength < 0) {
+            throw new IllegalArgumentException("maxContentLength: " + maxContentLength);
+        }
+        this.handler = handler;
+        this.executor = executor;
+        this.maxContentLength = maxContentLength;
+    }
+
+    public static int maxContentLengthFromConfig() {
+        return SystemPropertyUtil.getInt("http2.maxContentLength", 8 * 1024 * 1024);
+    }
+
+    @Override
+    public BodyHandler begin(Request request) throws TooLongFrameException {
+        // content-length 로 이미 넘는 것을 알면 바디를 받기 전에 거절
+        CharSequence contentLength = request.headers().get(HttpHeaderNames.CONTENT_LENGTH);
+        if (contentLength != null && Long.parseLong(contentLength.toString()) > maxContentLength) {
+            throw tooLong();
+        }
+        return new Body(request);
+    }
+
+    private TooLongFrameException tooLong() {
+        return new TooLongFrameException("request body exceeds " + maxContentLength + " bytes");
+    }
+
+    private final class Body implements BodyHandler {
+        private final Request request;
+        private CompositeByteBuf content;
+
+        Body(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public CompletionStage<?> onData(ByteBuf chunk) throws TooLongFrameException {
+            if (content == null) {
+                content = request.alloc().compositeBuffer(Integer.MAX_VALUE);
+            }
+            if (content.readableBytes() + chunk.readableBytes() > maxContentLength) {
+                throw tooLong();
+            }
+            content.addComponent(true, chunk.retain());
+            return null;
+        }
+
+        @Override
+        public CompletionStage<Response> onEnd() {
+            ByteBuf body = content != null ? content : Unpooled.EMPTY_BUFFER;
+            content = null;
+            CompletableFuture<Response> result = new CompletableFuture<>();
+            // 결과를 받을 루프는 호출자(StreamHandler)가 다시 맞추므로 여기서는 완료 스레드에서 바로 전달
+            executor.execute(ImmediateEventExecutor.INSTANCE, handler,
+                new Request(request.headers(), body, request.alloc()), (response, cause) -> {
+                    if (cause != null) {
+                        result.completeExceptionally(cause);
+                    } else {
+                        result.complete(response);
+                    }
+                });
+            return result;
+        }
+
+        @Override
+        public void onAbort(Throwable cause) {
+            if (content != null) {
+                content.release();
+                content = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.util.ByteProcessor;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 문자 단위 바디 변환 (대문자 변환 등). 바디를 String 으로 만들지 않고 ByteBuf 에서 읽어 ByteBuf 에 바로 씁니다.
+ * String 으로 디코딩 → 변환 → 이어 붙이기 → 인코딩하면 바디 크기의 몇 배를 할당하므로, 메시지 변환이 많은 경로에서 씁니다.
+ *
+ * <ul>
+ *   <li>바디는 요청 content-type 의 charset 으로 해석 ({@link #charset(CharSequence)}, 없으면 UTF-8)</li>
+ *   <li>UTF-8, EUC-KR 처럼 멀티바이트 문자의 모든 바이트가 0x80 이상인 charset 은 ASCII 구간을 바이트 단위로 변환하고,
+ *       그 사이의 비ASCII 구간만 디코딩 (ASCII 바이트가 문자 경계이므로 구간을 따로 디코딩해도 안전).
+ *       한글 사이의 공백처럼 짧은 ASCII 구간은 앞뒤 비ASCII 구간과 함께 디코딩</li>
+ *   <li>그 외 charset(UTF-16, Shift_JIS 등)은 바디 전체를 스레드별로 재사용하는 CharsetDecoder/CharBuffer 로 조금씩 디코딩해 변환</li>
+ *   <li>입력은 스레드별 배열로 조각씩 복사해 처리하므로 여러 DATA 프레임을 이어 붙인 CompositeByteBuf 도 합치지 않으며,
+ *       조각 경계에 걸친 문자는 이어서 디코딩</li>
+ *   <li>잘못된 바이트와 변환 결과를 인코딩할 수 없는 문자는 charset 의 대체 문자로 바꿈 (String 디코딩과 같음)</li>
+ * </ul>
+ *
+ * 변환은 코드 포인트 하나를 하나로 바꾸는 것만 지원합니다 (ß → SS 처럼 길이가 바뀌는 대문자 변환은 하지 않음).
+ * 비ASCII 문자가 대부분인 큰 바디는 JDK 의 String 전용 디코딩보다 느릴 수 있지만 할당은 없습니다 ({@code BodyTransformerBenchmark}).
+ */
+public abstract class BodyTransformer {
+
+    /** ASCII 와 Unicode 대문자 변환 (Character.toUpperCase) */
+    public static final BodyTransformer UPPER_CASE = new BodyTransformer() {
+        @Override
+        protected byte mapAscii(byte b) {
+            return b >= 'a' && b <= 'z' ? (byte) (b - ('a' - 'A')) : b;
+        }
+
+        @Override
+        protected int map(int codePoint) {
+            return Character.toUpperCase(codePoint);
+        }
+    };
+
+    // 비ASCII 문자의 모든 바이트가 0x80 이상인 (ASCII 바이트가 항상 문자 하나인) charset
+    private static final Set<Charset> ASCII_SAFE = asciiSafeCharsets(
+        "US-ASCII", "UTF-8", "ISO-8859-1", "EUC-KR", "EUC-JP", "GB2312");
+
+    // 바이트 단위로 따로 변환할 최소 ASCII 구간 길이
+    private static final int MIN_ASCII_RUN = 32;
+
+    private static final ByteProcessor FIND_ASCII = b -> b < 0;
+
+    private static final FastThreadLocal<Coders> CODERS = new FastThreadLocal<>();
+
+    private static Set<Charset> asciiSafeCharsets(String... names) {
+        Set<Charset> charsets = new HashSet<>();
+        for (String name : names) {
+            if (Charset.isSupported(name)) {
+                charsets.add(Charset.forName(name));
+            }
+        }
+        return charsets;
+    }
+
+    /** content-type 의 charset 파라미터, 없거나 지원하지 않으면 UTF-8 */
+    public static Charset charset(CharSequence contentType) {
+        return contentType == null ? CharsetUtil.UTF_8 : HttpUtil.getCharset(contentType, CharsetUtil.UTF_8);
+    }
+
+    /**
+     * 변환 결과를 쓰는 charset. 대부분 입력과 같고, UTF-16 은 인코딩할 때마다 BOM 을 쓰므로 (응답 앞뒤에 붙이는 문자열까지 각각)
+     * 같은 바이트 순서(big-endian)에 BOM 이 없는 UTF-16BE 로 씁니다. 응답 content-type 의 charset 도 이것으로 알립니다.
+     */
+    public static Charset outputCharset(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_16) ? StandardCharsets.UTF_16BE : charset;
+    }
+
+    /** ASCII 바이트 하나의 변환 결과 ({@link #map(int)} 과 같아야 하며 ASCII 여야 함) */
+    protected abstract byte mapAscii(byte b);
+
+    /** 코드 포인트 하나의 변환 결과 */
+    protected abstract int map(int codePoint);
+
+    /**
+     * in 의 읽을 수 있는 바이트를 charset 으로 해석해 변환하고, {@link #outputCharset(Charset)} 로 out 에 덧붙입니다.
+     * in 의 readerIndex 와 참조 카운트는 바꾸지 않습니다.
+     *
+     * @param out 결과를 덧붙일 버퍼, 필요하면 늘어남
+     */
+    public final void transform(ByteBuf in, Charset charset, ByteBuf out) {
+        int from = in.readerIndex();
+        int to = in.writerIndex();
+        Coders coders = coders(charset);
+        out.ensureWritable(in.readableBytes());
+        if (!ASCII_SAFE.contains(charset)) {
+            decode(in, from, to, out, coders);
+            return;
+        }
+        // 조각 단위로 배열에 복사해 ASCII 구간은 배열에서 바로 바꿔 쓰고, 비ASCII 구간을 만나면 그 구간만 디코딩
+        byte[] chunk = coders.chunk;
+        int chunkStart = from;
+        int chunkEnd = from;
+        int pos = from;
+        while (pos < to) {
+            if (pos >= chunkEnd) {
+                chunkStart = pos;
+                chunkEnd = pos + Math.min(chunk.length, to - pos);
+                in.getBytes(pos, chunk, 0, chunkEnd - pos);
+            }
+            int off = pos - chunkStart;
+            int len = chunkEnd - chunkStart;
+            int i = off;
+            for (byte b; i < len && (b = chunk[i]) >= 0; i++) {
+                chunk[i] = mapAscii(b);
+            }
+            if (i > off) {
+                out.writeBytes(chunk, off, i - off);
+                pos = chunkStart + i;
+            }
+            if (i < len) {
+                int j = nonAsciiRunEnd(chunk, i, len);
+                int runEnd = chunkStart + j;
+                if (j == len && runEnd < to) {
+                    int ascii = in.forEachByte(runEnd, to - runEnd, FIND_ASCII);
+                    runEnd = ascii < 0 ? to : ascii;
+                }
+                decode(in, pos, runEnd, out, coders);
+                pos = runEnd;
+            }
+        }
+    }
+
+    /**
+     * chunk[i] 부터의 비ASCII 구간 끝. 사이에 낀 ASCII 구간이 짧으면 (한글 사이의 공백, 구두점 등) 구간을 나눠 디코딩하는 비용이 더 크므로
+     * 그 뒤의 비ASCII 구간까지 이어 붙입니다. 끝은 ASCII 바이트(문자 경계)이거나 조각의 끝입니다.
+     */
+    private static int nonAsciiRunEnd(byte[] chunk, int i, int len) {
+        int j = i;
+        for (;;) {
+            while (j < len && chunk[j] < 0) {
+                j++;
+            }
+            int k = j;
+            while (k < len && k - j < MIN_ASCII_RUN && chunk[k] >= 0) {
+                k++;
+            }
+            if (k == len || chunk[k] >= 0) {
+                return j;
+            }
+            j = k;
+        }
+    }
+
+    /**
+     * [from, to) 를 디코딩 → 변환 → 인코딩 (to 는 문자 경계).
+     * 힙 배열을 거쳐야 JDK 디코더/인코더의 배열 경로를 타므로, 조각씩 배열로 복사해 디코딩하고 배열에 인코딩해 복사합니다.
+     * 조각 끝에 걸린 문자의 앞부분은 다음 조각 앞으로 옮겨 이어서 디코딩합니다.
+     */
+    private void decode(ByteBuf in, int from, int to, ByteBuf out, Coders coders) {
+        CharsetDecoder decoder = coders.decoder.reset();
+        coders.encoder.reset();
+        ByteBuffer src = coders.src;
+        src.clear();
+        coders.chars.clear();
+        int pos = from;
+        for (;;) {
+            int n = Math.min(src.remaining(), to - pos);
+            in.getBytes(pos, src.array(), src.position(), n);
+            src.position(src.position() + n);
+            pos += n;
+            boolean endOfInput = pos == to;
+            src.flip();
+            while (decoder.decode(src, coders.chars, endOfInput).isOverflow()) {
+                encode(out, coders, false);
+            }
+            if (endOfInput) {
+                break;
+            }
+            src.compact();
+        }
+        while (decoder.flush(coders.chars).isOverflow()) {
+            encode(out, coders, false);
+        }
+        encode(out, coders, true);
+    }
+
+    /** 디코딩된 문자를 변환해 인코딩. 끝이 아니면 쌍이 덜 온 high surrogate 는 다음으로 남김 */
+    private void encode(ByteBuf out, Coders coders, boolean endOfInput) {
+        CharBuffer chars = coders.chars;
+        chars.flip();
+        int limit = chars.limit();
+        if (!endOfInput && limit > chars.position() && Character.isHighSurrogate(chars.get(limit - 1))) {
+            chars.limit(limit - 1);
+        }
+        char[] array = chars.array();
+        for (int i = chars.position(), end = chars.limit(); i < end; i++) {
+            char c = array[i];
+            if (!Character.isSurrogate(c)) {
+                int mapped = map(c);
+                if (mapped != c && Character.isBmpCodePoint(mapped)) {
+                    array[i] = (char) mapped;
+                }
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(array[i + 1])) {
+                int codePoint = Character.toCodePoint(c, array[i + 1]);
+                int mapped = map(codePoint);
+                if (mapped != codePoint && Character.isSupplementaryCodePoint(mapped)) {
+                    Character.toChars(mapped, array, i);
+                }
+                i++;
+            }
+        }
+        CharsetEncoder encoder = coders.encoder;
+        ByteBuffer dst = coders.dst;
+        for (;;) {
+            dst.clear();
+            CoderResult result = encoder.encode(chars, dst, endOfInput);
+            if (endOfInput && result.isUnderflow()) {
+                result = encoder.flush(dst);
+            }
+            out.writeBytes(dst.array(), 0, dst.position());
+            if (!result.isOverflow()) {
+                break;
+            }
+        }
+        chars.limit(limit);
+        chars.compact();
+    }
+
+    private static Coders coders(Charset charset) {
+        Coders coders = CODERS.get();
+        if (coders == null || !coders.charset.equals(charset)) {
+            coders = new Coders(charset);
+            CODERS.set(coders);
+        }
+        return coders;
+    }
+
+    /** 스레드별로 재사용하는 (마지막으로 쓴 charset 의) 디코더/인코더와 배열 버퍼 */
+    private static final class Coders {
+        final Charset charset;
+        final CharsetDecoder decoder;
+        final CharsetEncoder encoder;
+        // ASCII 구간을 바꿔 쓰는 입력 조각
+        final byte[] chunk = new byte[8192];
+        // 디코딩할 입력 조각, 디코딩한 문자, 인코딩한 바이트
+        final ByteBuffer src = ByteBuffer.allocate(4096);
+        final CharBuffer chars = CharBuffer.allocate(4096);
+        final ByteBuffer dst = ByteBuffer.allocate(8192);
+
+        Coders(Charset charset) {
+            this.charset = charset;
+            this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.encoder = outputCharset(charset).newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package common;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.BrotliDecoder;
+import io.netty.handler.codec.compression.BrotliEncoder;
+import io.netty.handler.codec.compression.CompressionOptions;
+import io.netty.handler.codec.compression.StandardCompressionOptions;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.AsciiString;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.Locale;
+
+/**
+ * 바디 압축(content-encoding) 정책.
+ *
+ * 응답은 요청의 accept-encoding 중 가장 높은 q 값을 가진 gzip/deflate/br 로, 정해진 content-type 이고
+ * minSize 이상일 때만 압축합니다 (작은 바디는 압축 헤더/CPU 비용이 더 큼).
+ * br 은 brotli4j 네이티브 라이브러리가 클래스패스에 있을 때만 씁니다 ({@link Brotli#isAvailable()}).
+ * 요청 바디는 HTTP 에 협상 절차가 없으므로 클라이언트에서 켠 경우에만 같은 조건으로 requestEncoding 으로 압축합니다.
+ *
+ * <pre>
+ * -Dhttp2.compression=true
+ * -Dhttp2.compression.minSize=1024
+ * -Dhttp2.compression.types=text/,application/json,application/xml,application/javascript,+json,+xml
+ *                                     content-type 이 이 중 하나로 시작하거나 (+ 로 시작하면) 그 접미사를 포함하면 압축
+ * -Dhttp2.compression.requestEncoding=(없음)   클라이언트 요청 바디 압축 (gzip | deflate)
+ * </pre>
+ */
+public final class Compression {
+
+    public static final AsciiString BR = AsciiString.cached("br");
+
+    private final boolean enabled;
+    private final int minSize;
+    private final String[] types;
+    private final AsciiString requestEncoding;
+    private final AsciiString acceptEncoding;
+
+    public Compression(boolean enabled, int minSize, String[] types, CharSequence requestEncoding) {
+        this.enabled = enabled;
+        this.minSize = minSize;
+        this.types = types.clone();
+        this.requestEncoding = requestEncoding == null ? null : AsciiString.of(requestEncoding);
+        this.acceptEncoding = AsciiString.cached(Brotli.isAvailable() ? "gzip, deflate, br" : "gzip, deflate");
+    }
+
+    public static Compression fromSystemProperties() {
+        return new Compression(
+            SystemPropertyUtil.getBoolean("http2.compression", true),
+            SystemPropertyUtil.getInt("http2.compression.minSize", 1024),
+            SystemPropertyUtil.get("http2.compression.types",
+                "text/,application/json,application/xml,application/javascript,+json,+xml").split(","),
+            SystemPropertyUtil.get("http2.compression.requestEncoding"));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** 클라이언트가 요청에 붙일 accept-encoding (풀 수 있는 것만) */
+    public AsciiString acceptEncoding() {
+        return acceptEncoding;
+    }
+
+    /**
+     * 응답을 압축할 인코딩. 압축하지 않으면 null
+     *
+     * @param acceptEncoding 요청의 accept-encoding
+     * @param length         바디 크기 (모르면 -1, 이때는 크기 조건을 보지 않음)
+     */
+    public AsciiString responseEncoding(CharSequence acceptEncoding, Http2Headers response, long length) {
+        CharSequence status = response.status();
+        if (acceptEncoding == null || !compressible(response, length)
+            || status == null || status.length() != 3 || status.charAt(0) != '2') {
+            return null;
+        }
+        return negotiate(acceptEncoding);
+    }
+
+    /** 클라이언트 요청 바디를 압축할 인코딩. 압축하지 않으면 null */
+    public AsciiString requestEncoding(Http2Headers request, long length) {
+        return requestEncoding != null && compressible(request, length) ? requestEncoding : null;
+    }
+
+    private boolean compressible(Http2Headers headers, long length) {
+        if (!enabled || length == 0 || (length > 0 && length < minSize) || headers.contains(HttpHeaderNames.CONTENT_ENCODING)) {
+            return false;
+        }
+        CharSequence contentType = headers.get(HttpHeaderNames.CONTENT_TYPE);
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toString().toLowerCase(Locale.ROOT);
+        for (String t : types) {
+            t = t.trim();
+            if (t.startsWith("+") ? type.contains(t) : type.startsWith(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** accept-encoding 에서 지원하는 것 중 q 가 가장 높은 것 (같으면 br &gt; gzip &gt; deflate) */
+    static AsciiString negotiate(CharSequence acceptEncoding) {
+        float br = -1;
+        float gzip = -1;
+        float deflate = -1;
+        float star = -1;
+        for (String token : acceptEncoding.toString().split(",")) {
+            String[] parts = token.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            float q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Float.parseFloat(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            switch (coding) {
+                case "br":
+                    br = q;
+                    break;
+                case "gzip":
+                case "x-gzip":
+                    gzip = q;
+                    break;
+                case "deflate":
+                    deflate = q;
+                    break;
+                case "*":
+                    star = q;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (star > 0) {
+            br = br < 0 ? star : br;
+            gzip = gzip < 0 ? star : gzip;
+            deflate = deflate < 0 ? star : deflate;
+        }
+        if (!Brotli.isAvailable()) {
+            br = -1;
+        }
+        if (br > 0 && br >= gzip && br >= deflate) {
+            return BR;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return HttpHeaderValues.GZIP;
+        }
+        return deflate > 0 ? HttpHeaderValues.DEFLATE : null;
+    }
+
+    /**
+     * encoding 으로 압축해 보낼 헤더. 원본은 공유 템플릿일 수 있으므로 복사하고, 길이가 바뀌므로 content-length 는 빼며
+     * 같은 표현의 다른 인코딩이 되므로 강한 ETag 는 약한 ETag 로 바꿉니다.
+     */
+    public static Http2Headers withEncoding(Http2Headers headers, CharSequence encoding) {
+        Http2Headers encoded = new DefaultHttp2Headers().set(headers);
+        encoded.set(HttpHeaderNames.CONTENT_ENCODING, encoding);
+        encoded.remove(HttpHeaderNames.CONTENT_LENGTH);
+        encoded.add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        CharSequence etag = encoded.get(HttpHeaderNames.ETAG);
+        if (etag != null && etag.length() > 0 && etag.charAt(0) == '"') {
+            encoded.set(HttpHeaderNames.ETAG, "W/" + etag);
+        }
+        return encoded;
+    }
+
+    /**
+     * CompressorHttp2ConnectionEncoder 에 줄 압축 옵션.
+     * 기본 생성자는 brotli 옵션을 함께 만들어 brotli4j 가 없으면 실패하므로 쓸 수 있는 것만 넘김
+     */
+    public static CompressionOptions[] encoderOptions() {
+        return Brotli.isAvailable()
+            ? new CompressionOptions[]{StandardCompressionOptions.brotli(), StandardCompressionOptions.gzip(), StandardCompressionOptions.deflate()}
+            : new CompressionOptions[]{StandardCompressionOptions.gzip(), StandardCompressionOptions.deflate()};
+    }
+
+    /** 압축기 (outbound 로 쓰고 readOutbound 로 꺼냄), 지원하지 않는 인코딩이면 null */
+    public static EmbeddedChannel newEncoder(CharSequence encoding) {
+        if (HttpHeaderValues.GZIP.contentEqualsIgnoreCase(encoding)) {
+            return new EmbeddedChannel(ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP));
+        }
+        if (HttpHeaderValues.DEFLATE.contentEqualsIgnoreCase(encoding)) {
+            return new EmbeddedChannel(ZlibCodecFactory.newZlibEncoder(ZlibWrapper.ZLIB));
+        }
+        if (BR.contentEqualsIgnoreCase(encoding) && Brotli.isAvailable()) {
+            return new EmbeddedChannel(new BrotliEncoder());
+        }
+        return null;
+    }
+
+    /**
+     * 압축 해제기 (inbound 로 쓰고 readInbound 로 꺼냄), 지원하지 않는 인코딩이면 null.
+     * 출력 크기를 제한하지 않으므로 (4.1.68 의 zlib 디코더에는 maxAllocation 이 없음) 입력을 조금씩 넣고 출력을 확인해야 합니다
+     * ({@link Http2CompressionHandler}).
+     */
+    public static EmbeddedChannel newDecoder(CharSequence encoding) {
+        if (HttpHeaderValues.GZIP.contentEqualsIgnoreCase(encoding) || HttpHeaderValues.X_GZIP.contentEqualsIgnoreCase(encoding)) {
+            return new EmbeddedChannel(ZlibCodecFactory.newZlibDecoder(ZlibWrapper.GZIP));
+        }
+        if (HttpHeaderValues.DEFLATE.contentEqualsIgnoreCase(encoding) || HttpHeaderValues.X_DEFLATE.contentEqualsIgnoreCase(encoding)) {
+            // deflate 는 zlib 래퍼 유무가 구현마다 달라서 자동 판별
+            return new EmbeddedChannel(ZlibCodecFactory.newZlibDecoder(ZlibWrapper.ZLIB_OR_NONE));
+        }
+        if (BR.contentEqualsIgnoreCase(encoding) && Brotli.isAvailable()) {
+            return new EmbeddedChannel(new BrotliDecoder());
+        }
+        return null;
+    }
+}
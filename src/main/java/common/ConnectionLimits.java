@@ -0,0 +1,189 @@
+package common;
+
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 서버 커넥션별 자원 상한. Netty 4.1.68 에는 HTTP/2 rapid reset(CVE-2023-44487) 대응이 없으므로
+ * 스트림을 열고 바로 리셋하는 클라이언트가 이벤트 루프의 CPU 를, 바디를 보내 놓고 끝내지 않는 클라이언트가 힙을 독차지하지 못하게 합니다.
+ *
+ * <ul>
+ *   <li>동시 스트림 - SETTINGS_MAX_CONCURRENT_STREAMS 로 알리고, 넘게 열면 코덱이 RST_STREAM(REFUSED_STREAM)</li>
+ *   <li>헤더 리스트 크기 - SETTINGS_MAX_HEADER_LIST_SIZE ({@link Http2Config}), 넘으면 코덱이 거절</li>
+ *   <li>새 스트림 속도 - token bucket, 넘으면 그 스트림을 RST_STREAM(ENHANCE_YOUR_CALM)</li>
+ *   <li>상대가 리셋한 스트림 속도 - token bucket, 넘으면 GOAWAY(ENHANCE_YOUR_CALM) 후 커넥션을 닫음.
+ *       동시 스트림 상한은 리셋된 스트림이 바로 빠지므로 rapid reset 을 막지 못함</li>
+ *   <li>모으고 있는 요청 바디 - 커넥션별 상한과 서버 전체 상한(모든 커넥션이 나눠 쓰는 풀).
+ *       스트림이 닫힐 때(응답 완료, 리셋) 반환하며, 상한을 넘게 만든 스트림은 RST_STREAM(ENHANCE_YOUR_CALM)</li>
+ * </ul>
+ *
+ * 서버에서 한 번 만들어 모든 커넥션이 공유하고, 커넥션마다 {@link #newBudget(Http2Connection)} 으로 예산을 만듭니다.
+ *
+ * <pre>
+ * -Dhttp2.limits.maxConcurrentStreams=256   -Dhttp2.maxConcurrentStreams 가 없을 때 서버가 알리는 값
+ * -Dhttp2.limits.streamRate=0               커넥션별 초당 새 스트림 수 (0 이면 제한 없음)
+ * -Dhttp2.limits.streamBurst=1000           새 스트림 순간 허용량
+ * -Dhttp2.limits.resetRate=100              커넥션별 초당 상대 RST_STREAM 수 (0 이면 제한 없음)
+ * -Dhttp2.limits.resetBurst=1000            RST_STREAM 순간 허용량
+ * -Dhttp2.limits.maxBodyBytes=67108864      커넥션별로 모으고 있는 요청 바디 상한 (bytes)
+ * -Dhttp2.limits.maxTotalBodyBytes=(최대 힙의 1/4)   서버 전체 상한 (bytes)
+ * </pre>
+ */
+public final class ConnectionLimits {
+
+    private final long maxConcurrentStreams;
+    private final long streamRate;
+    private final long streamBurst;
+    private final long resetRate;
+    private final long resetBurst;
+    private final long maxBodyBytes;
+    private final long maxTotalBodyBytes;
+    // 모든 커넥션이 모으고 있는 바디 합계
+    private final AtomicLong totalBodyBytes = new AtomicLong();
+
+    public ConnectionLimits(long maxConcurrentStreams, long streamRate, long streamBurst,
+        long resetRate, long resetBurst, long maxBodyBytes, long maxTotalBodyBytes) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.streamRate = streamRate;
+        this.streamBurst = streamBurst;
+        this.resetRate = resetRate;
+        this.resetBurst = resetBurst;
+        this.maxBodyBytes = maxBodyBytes;
+        this.maxTotalBodyBytes = maxTotalBodyBytes;
+    }
+
+    public static ConnectionLimits fromConfig() {
+        return new ConnectionLimits(
+            SystemPropertyUtil.getLong("http2.limits.maxConcurrentStreams", 256),
+            SystemPropertyUtil.getLong("http2.limits.streamRate", 0),
+            SystemPropertyUtil.getLong("http2.limits.streamBurst", 1000),
+            SystemPropertyUtil.getLong("http2.limits.resetRate", 100),
+            SystemPropertyUtil.getLong("http2.limits.resetBurst", 1000),
+            SystemPropertyUtil.getLong("http2.limits.maxBodyBytes", 64 * 1024 * 1024),
+            SystemPropertyUtil.getLong("http2.limits.maxTotalBodyBytes", Runtime.getRuntime().maxMemory() / 4));
+    }
+
+    /** 제한 없음 (벤치마크, 기본 생성자용) */
+    public static ConnectionLimits unlimited() {
+        return new ConnectionLimits(0, 0, 0, 0, 0, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /** 동시 스트림 상한을 설정에 반영 (직접 지정한 http2.maxConcurrentStreams 가 우선) */
+    public Http2Settings applyTo(Http2Settings settings) {
+        if (maxConcurrentStreams > 0 && settings.maxConcurrentStreams() == null) {
+            settings.maxConcurrentStreams(maxConcurrentStreams);
+        }
+        return settings;
+    }
+
+    /** 서버 전체에서 모으고 있는 요청 바디 (bytes) */
+    public long totalBodyBytes() {
+        return totalBodyBytes.get();
+    }
+
+    public Budget newBudget(Http2Connection connection) {
+        return new Budget(connection);
+    }
+
+    /**
+     * 커넥션 하나의 예산. 그 커넥션의 이벤트 루프에서만 호출되므로 서버 전체 합계 외에는 동기화하지 않습니다.
+     */
+    public final class Budget {
+        private final Http2Connection.PropertyKey bodyKey;
+        private final TokenBucket streams = new TokenBucket(streamRate, streamBurst);
+        private final TokenBucket resets = new TokenBucket(resetRate, resetBurst);
+        private long bodyBytes;
+
+        Budget(Http2Connection connection) {
+            bodyKey = connection.newKey();
+            connection.addListener(new Http2ConnectionAdapter() {
+                @Override
+                public void onStreamClosed(Http2Stream stream) {
+                    StreamBody body = stream.removeProperty(bodyKey);
+                    if (body != null) {
+                        release(body.bytes);
+                    }
+                }
+            });
+        }
+
+        /** 새 스트림을 받아도 되는지 */
+        public boolean tryOpenStream() {
+            return streams.tryAcquire();
+        }
+
+        /** 상대가 보낸 RST_STREAM 하나, false 면 커넥션을 닫아야 함 */
+        public boolean tryReset() {
+            return resets.tryAcquire();
+        }
+
+        /**
+         * 스트림에 모을 요청 바디를 예약합니다. 예약은 스트림이 닫힐 때 반환됩니다.
+         *
+         * @return 커넥션이나 서버 전체 상한을 넘으면 false (예약하지 않음)
+         */
+        public boolean reserveBody(Http2Stream stream, int bytes) {
+            if (bytes == 0) {
+                return true;
+            }
+            if (bodyBytes + bytes > maxBodyBytes) {
+                return false;
+            }
+            if (totalBodyBytes.addAndGet(bytes) > maxTotalBodyBytes) {
+                totalBodyBytes.addAndGet(-bytes);
+                return false;
+            }
+            bodyBytes += bytes;
+            StreamBody body = stream.getProperty(bodyKey);
+            if (body == null) {
+                stream.setProperty(bodyKey, body = new StreamBody());
+            }
+            body.bytes += bytes;
+            return true;
+        }
+
+        private void release(long bytes) {
+            bodyBytes -= bytes;
+            totalBodyBytes.addAndGet(-bytes);
+        }
+    }
+
+    /** 스트림 하나가 예약한 바디 바이트 */
+    private static final class StreamBody {
+        long bytes;
+    }
+
+    /** 초당 rate 개씩 채워지고 최대 burst 개까지 쌓이는 토큰. rate 가 0 이면 항상 허용 */
+    private static final class TokenBucket {
+        private final long rate;
+        private final double burst;
+        private double tokens;
+        private long lastNanos = System.nanoTime();
+
+        TokenBucket(long rate, long burst) {
+            this.rate = rate;
+            this.burst = Math.max(1, burst);
+            this.tokens = this.burst;
+        }
+
+        boolean tryAcquire() {
+            if (rate <= 0) {
+                return true;
+            }
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastNanos) * rate / (double) TimeUnit.SECONDS.toNanos(1));
+            lastNanos = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+import io.netty.util.concurrent.Future;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 커넥션(부모 채널)의 flush 를 모아 소켓 write(syscall) 와 TCP 세그먼트 수를 줄입니다.
+ * 스트림 채널의 flush 와 Http2ConnectionHandler 의 flush 는 모두 부모 파이프라인을 타고 여기로 오므로,
+ * 여러 스트림의 응답이 한 번의 flush 로 나갑니다.
+ *
+ * <ul>
+ *   <li>읽기 중 - channelReadComplete 까지 미룸. 뒤쪽 핸들러(Http2MultiplexHandler 가 스트림 채널에 readComplete 를
+ *       전달하며 생기는 flush 포함)가 readComplete 를 처리한 뒤 한 번에 flush</li>
+ *   <li>읽기 밖(executor 스레드에서 끝난 응답 등) - delay 가 0 이면 이벤트 루프에 이미 쌓인 작업까지 처리한 뒤,
+ *       0 보다 크면 그 시간 뒤에 flush</li>
+ *   <li>쓴 바이트가 maxBytes 이상이거나 채널이 unwritable 이 되면 바로 flush (지연/메모리 상한)</li>
+ * </ul>
+ *
+ * Netty 의 FlushConsolidationHandler 와 같은 방식이며, 코덱보다 앞(소켓 쪽, TLS 면 SslHandler 바로 뒤)에 둡니다.
+ *
+ * <pre>
+ * -Dhttp2.flush.coalesce=false       true 면 서버 커넥션에 추가
+ * -Dhttp2.flush.delayMicros=0        읽기 밖에서 flush 를 미루는 최대 시간 (0 이면 이벤트 루프의 다음 차례)
+ * -Dhttp2.flush.maxBytes=65536       이만큼 쌓이면 미루지 않고 flush
+ * </pre>
+ */
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+
+    private final long delayNanos;
+    private final long maxBytes;
+
+    private boolean readInProgress;
+    private boolean flushPending;
+    private long pendingBytes;
+    private Future<?> scheduledFlush;
+    private Runnable flushTask;
+
+    public FlushCoalescingHandler(long delay, TimeUnit unit, long maxBytes) {
+        this.delayNanos = unit.toNanos(delay);
+        this.maxBytes = maxBytes;
+    }
+
+    /** 설정대로 만들고, 꺼져 있으면 null */
+    public static FlushCoalescingHandler fromConfig() {
+        if (!SystemPropertyUtil.getBoolean("http2.flush.coalesce", false)) {
+            return null;
+        }
+        return new FlushCoalescingHandler(SystemPropertyUtil.getLong("http2.flush.delayMicros", 0),
+            TimeUnit.MICROSECONDS, SystemPropertyUtil.getLong("http2.flush.maxBytes", 65536));
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        flushTask = () -> {
+            scheduledFlush = null;
+            if (flushPending && !readInProgress) {
+                flushNow(ctx);
+            }
+        };
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        pendingBytes += size(msg);
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        Metrics.instance().flushRequested();
+        if (pendingBytes >= maxBytes) {
+            flushNow(ctx);
+            return;
+        }
+        flushPending = true;
+        if (!readInProgress && scheduledFlush == null) {
+            scheduledFlush = delayNanos > 0
+                ? ctx.executor().schedule(flushTask, delayNanos, TimeUnit.NANOSECONDS)
+                : ctx.executor().submit(flushTask);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        // 뒤쪽 핸들러가 readComplete 에서 하는 flush 까지 모은 뒤 내보냄
+        ctx.fireChannelReadComplete();
+        readInProgress = false;
+        flushIfPending(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (!ctx.channel().isWritable()) {
+            // 출력 버퍼가 찼으면 쌓인 것을 내보내야 writable 로 돌아옴
+            flushIfPending(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        flushIfPending(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        cancelScheduledFlush();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfPending(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfPending(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        flushIfPending(ctx);
+    }
+
+    private void flushIfPending(ChannelHandlerContext ctx) {
+        if (flushPending) {
+            flushNow(ctx);
+        }
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        cancelScheduledFlush();
+        flushPending = false;
+        pendingBytes = 0;
+        Metrics.instance().flushed();
+        ctx.flush();
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    private static long size(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        if (msg instanceof FileRegion) {
+            return ((FileRegion) msg).count();
+        }
+        return 0;
+    }
+}
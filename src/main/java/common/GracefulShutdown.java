@@ -0,0 +1,235 @@
+package common;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 서버 drain(무중단 종료) 절차.
+ *
+ * <ol>
+ *   <li>서버(리스닝) 채널을 모두 닫아 새 커넥션을 받지 않음</li>
+ *   <li>모든 커넥션에 두 단계로 GOAWAY(NO_ERROR) 를 보냄 (RFC 9113 6.8).
+ *       먼저 last-stream-id 를 최대값으로 보내 새 스트림을 그만 열게 하고, 그 사이 이미 출발한 스트림이 도착할 시간(1초) 뒤
+ *       실제로 받은 마지막 스트림 id 로 다시 보냄. 클라이언트는 그보다 큰 id 의 스트림이 처리되지 않았음을 알고
+ *       새 커넥션으로 안전하게 재시도할 수 있음. 한 번에 닫으면 클라이언트가 계속 보내던 요청이 읽히지 않은 채 남아
+ *       커널이 RST 를 보내고, 클라이언트는 GOAWAY 와 응답까지 잃음</li>
+ *   <li>이미 받은 스트림은 기한까지 마저 처리하고, 활성 스트림이 없어지면 출력만 닫고(FIN) 클라이언트가 닫을 때까지 읽음
+ *       ({@link LingeringCloseHandler}, 기한이 지나면 강제로 닫음)</li>
+ *   <li>모든 커넥션이 닫히면 drain future 가 완료되고, 서버가 이벤트 루프를 종료</li>
+ * </ol>
+ *
+ * API({@link #drain(long, TimeUnit)}) 나 SIGTERM({@link #installShutdownHook()}) 으로 시작합니다.
+ * HTTP/2 로 넘어가기 전(업그레이드/TLS 핸드셰이크 중)인 커넥션은 바로 닫고,
+ * HTTP/1.1 로 요청을 처리하는 커넥션은 {@link Drainable} 핸들러가 받은 요청을 마친 뒤 닫습니다.
+ *
+ * <pre>
+ * -Dhttp2.drain.timeout=30     진행 중인 스트림을 기다리는 최대 시간(초)
+ * </pre>
+ */
+public final class GracefulShutdown {
+
+    // 첫 GOAWAY 이후 이미 출발한 스트림을 기다리는 시간 (RTT 이상)
+    private static final long GOAWAY_DELAY_MILLIS = 1000;
+
+    private final EventLoopGroup[] groups;
+    // 닫힌 채널은 그룹에서 자동으로 빠짐
+    private final ChannelGroup connections = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final Promise<Void> drained = GlobalEventExecutor.INSTANCE.newPromise();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // 리스닝 채널 (SO_REUSEPORT 샤드면 여러 개)
+    private final List<Channel> serverChannels = new CopyOnWriteArrayList<>();
+    private volatile long deadlineNanos;
+
+    /**
+     * @param groups drain 후 종료를 기다릴 이벤트 루프 그룹 ({@link #awaitTermination(long, TimeUnit)})
+     */
+    public GracefulShutdown(EventLoopGroup... groups) {
+        this.groups = groups.clone();
+    }
+
+    /**
+     * HTTP/2 가 아닌 커넥션을 처리하는 핸들러. 커넥션 파이프라인에 있으면 drain 시 바로 닫는 대신 호출됩니다.
+     */
+    public interface Drainable extends ChannelHandler {
+
+        /**
+         * 커넥션의 이벤트 루프에서 호출. 새 요청을 그만 받고 받은 요청에 응답한 뒤 커넥션을 닫아야 합니다
+         * (drain 기한이 지나면 남은 커넥션은 강제로 닫힘).
+         */
+        void drain(ChannelHandlerContext ctx);
+    }
+
+    public static long timeoutMillisFromConfig() {
+        return TimeUnit.SECONDS.toMillis(SystemPropertyUtil.getLong("http2.drain.timeout", 30));
+    }
+
+    /** 리스닝 채널 등록, {@link ListenerShards} 처럼 여러 개면 각각 호출 */
+    public void bound(Channel serverChannel) {
+        serverChannels.add(serverChannel);
+    }
+
+    /** 새 커넥션 등록 (childHandler 의 initChannel 에서 호출), drain 중이면 바로 GOAWAY */
+    public void track(Channel connection) {
+        connections.add(connection);
+        if (draining.get()) {
+            connection.eventLoop().execute(() -> goAway(connection));
+        }
+    }
+
+    public boolean isDraining() {
+        return draining.get();
+    }
+
+    /**
+     * drain 을 시작하고, 모든 커넥션이 닫히면 완료되는 future 를 반환합니다. 여러 번 호출해도 처음 한 번만 시작합니다.
+     *
+     * @param timeout 진행 중인 스트림을 기다리는 최대 시간
+     */
+    public Future<Void> drain(long timeout, TimeUnit unit) {
+        if (!draining.compareAndSet(false, true)) {
+            return drained;
+        }
+        deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+        for (Channel server : serverChannels) {
+            server.close().awaitUninterruptibly();
+        }
+        for (Channel connection : connections) {
+            connection.eventLoop().execute(() -> goAway(connection));
+        }
+        connections.newCloseFuture().addListener(f -> drained.trySuccess(null));
+        // graceful close 가 기한을 넘기거나 drain 시작 직후 등록된 커넥션이 남은 경우 대비
+        GlobalEventExecutor.INSTANCE.schedule(() -> {
+            if (!drained.isDone()) {
+                connections.close().addListener(f -> drained.trySuccess(null));
+            }
+        }, unit.toMillis(timeout) + 1000, TimeUnit.MILLISECONDS);
+        return drained;
+    }
+
+    private void goAway(Channel connection) {
+        Http2ConnectionHandler http2 = connection.pipeline().get(Http2ConnectionHandler.class);
+        if (http2 == null || !connection.isActive()) {
+            ChannelHandlerContext drainable = connection.pipeline().context(Drainable.class);
+            if (drainable != null && connection.isActive()) {
+                ((Drainable) drainable.handler()).drain(drainable);
+            } else {
+                connection.close();
+            }
+            return;
+        }
+        connection.pipeline().addFirst(new LingeringCloseHandler(http2.connection()));
+        ChannelHandlerContext ctx = connection.pipeline().context(http2);
+        http2.goAway(ctx, Integer.MAX_VALUE, Http2Error.NO_ERROR.code(), Unpooled.EMPTY_BUFFER, ctx.newPromise());
+        ctx.flush();
+        connection.eventLoop().schedule(() -> {
+            if (!connection.isActive()) {
+                return;
+            }
+            http2.goAway(ctx, http2.connection().remote().lastStreamCreated(), Http2Error.NO_ERROR.code(),
+                Unpooled.EMPTY_BUFFER, ctx.newPromise());
+            // close() 는 활성 스트림이 모두 끝나거나 이 시간이 지나면 커넥션을 닫음
+            http2.gracefulShutdownTimeoutMillis(remainingMillis());
+            connection.close();
+        }, Math.min(GOAWAY_DELAY_MILLIS, remainingMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * drain 중인 커넥션의 close 를 lingering close 로 바꿈 (파이프라인 맨 앞).
+     * 바로 닫으면 클라이언트가 그 사이 보낸(읽지 않은) 바이트 때문에 커널이 RST 를 보내고, 클라이언트는 아직 읽지 않은 응답과
+     * GOAWAY 까지 잃으므로 활성 스트림이 끝나면 출력만 닫고(FIN) 클라이언트가 닫을 때까지(EOF) 계속 읽습니다.
+     * GOAWAY 뒤에 도착한 스트림의 DATA 를 코덱이 연결 오류로 처리해 닫는 경우도 같은 방식으로 닫힙니다. 기한이 지나면 바로 닫습니다.
+     */
+    private final class LingeringCloseHandler extends ChannelOutboundHandlerAdapter {
+        private final Http2Connection http2;
+        private boolean closing;
+
+        LingeringCloseHandler(Http2Connection http2) {
+            this.http2 = http2;
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            ctx.executor().schedule(() -> ctx.close(), remainingMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+            if (!(ctx.channel() instanceof DuplexChannel)) {
+                ctx.close(promise);
+                return;
+            }
+            ctx.channel().closeFuture().addListener(f -> promise.trySuccess());
+            if (closing) {
+                return;
+            }
+            closing = true;
+            if (http2.numActiveStreams() == 0) {
+                shutdownOutput(ctx);
+                return;
+            }
+            http2.addListener(new Http2ConnectionAdapter() {
+                @Override
+                public void onStreamClosed(Http2Stream stream) {
+                    if (http2.numActiveStreams() == 0) {
+                        shutdownOutput(ctx);
+                    }
+                }
+            });
+        }
+
+        private void shutdownOutput(ChannelHandlerContext ctx) {
+            DuplexChannel channel = (DuplexChannel) ctx.channel();
+            if (!channel.isOutputShutdown()) {
+                // 쓰기 버퍼에 남은 응답을 먼저 내보낸 뒤 FIN
+                ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(f -> channel.shutdownOutput());
+            }
+        }
+    }
+
+    /** 이벤트 루프 그룹이 모두 종료될 때까지 기다림 */
+    public void awaitTermination(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (EventLoopGroup group : groups) {
+            group.terminationFuture().awaitUninterruptibly(
+                Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        }
+    }
+
+    /**
+     * SIGTERM(JVM 종료) 시 drain 하고 서버가 이벤트 루프를 정리할 때까지 기다리는 shutdown hook 을 등록합니다.
+     */
+    public void installShutdownHook() {
+        long timeoutMillis = timeoutMillisFromConfig();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Draining connections (up to " + timeoutMillis + " ms)");
+            drain(timeoutMillis, TimeUnit.MILLISECONDS).awaitUninterruptibly();
+            awaitTermination(10, TimeUnit.SECONDS);
+        }, "http2-drain"));
+    }
+}
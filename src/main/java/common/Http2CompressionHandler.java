@@ -0,0 +1,344 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2FrameStream;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * Http2StreamChannel 파이프라인용 content-encoding 코덱 (Http2FrameCodec 을 쓰는 server2/client 용,
+ * Http2ConnectionHandler 를 쓰는 server 는 Netty 의 CompressorHttp2ConnectionEncoder 를 씀).
+ *
+ * <ul>
+ *   <li>inbound - 받은 HEADERS 의 content-encoding 을 지우고 DATA 를 풀어서 전달 (모르는 인코딩은 그대로 전달)</li>
+ *   <li>outbound - {@link Compression} 정책에 맞으면 DATA 를 압축. 서버는 받은 요청의 accept-encoding 으로 협상하고,
+ *       클라이언트는 요청에 accept-encoding 을 붙이고 설정된 경우 요청 바디를 압축</li>
+ * </ul>
+ *
+ * 크기 조건을 보려면 바디 크기를 알아야 하므로 content-length 가 없으면 첫 DATA 가 올 때까지 HEADERS 를 붙잡아 둡니다
+ * (첫 DATA 가 END_STREAM 이면 그 크기로, 아니면 크기를 모르는 것으로 판단).
+ * 스트림 채널의 흐름제어 윈도우는 이 핸들러 앞에서 원래 DATA 크기로 계산되므로 압축/해제와 무관합니다.
+ *
+ * 압축 해제기는 출력 크기를 제한하지 않으므로 (16KB DATA 하나가 16MB 로 풀릴 수 있음) 받은 DATA 를 {@link #INFLATE_STEP} 바이트씩
+ * 넣어 {@link #FORWARD_BYTES} 가 모이면 DATA 하나로 넘기고, 나머지는 뒤 핸들러가 다음 read 를 요청할 때 이어서 풉니다
+ * (autoRead 면 바로 이어서 풂).
+ * 풀린 바디가 maxDecodedBytes 를 넘으면 더 풀지 않고 {@link TooLongFrameException} 을 뒤로 보내며 남은 DATA 는 버립니다.
+ */
+public class Http2CompressionHandler extends ChannelDuplexHandler {
+
+    // 한 번에 압축 해제기에 넣는 입력 (deflate 는 최대 약 1000배로 풀리므로 한 번의 출력은 약 512KB 이하)
+    private static final int INFLATE_STEP = 512;
+    // 풀린 바이트를 이만큼 모으면 DATA 하나로 넘김
+    private static final int FORWARD_BYTES = 64 * 1024;
+
+    private final Compression compression;
+    private final boolean server;
+    private final long maxDecodedBytes;
+
+    // 서버: 요청의 accept-encoding
+    private CharSequence acceptEncoding;
+    private boolean requestSeen;
+    private EmbeddedChannel decoder;
+    // 아직 풀지 않은 받은 DATA 의 나머지, 뒤 핸들러의 read 요청에 이어서 풂
+    private ByteBuf pendingInput;
+    private boolean pendingEndStream;
+    private Http2FrameStream pendingStream;
+    private long decodedBytes;
+    // 풀린 바디가 상한을 넘어 남은 DATA 를 버리는 중
+    private boolean decodeFailed;
+    private EmbeddedChannel encoder;
+    // 첫 HEADERS(클라이언트는 요청, 서버는 응답)를 보냈는지, 그 뒤의 HEADERS 는 트레일러
+    private boolean headersSent;
+    // 첫 DATA 를 기다리는 HEADERS
+    private Http2HeadersFrame pendingHeaders;
+    private ChannelPromise pendingPromise;
+
+    public Http2CompressionHandler(Compression compression, boolean server) {
+        this(compression, server, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxDecodedBytes 받은 바디를 푼 크기의 상한 (server2 는 {@link BodyAggregator#maxContentLengthFromConfig()})
+     */
+    public Http2CompressionHandler(Compression compression, boolean server, long maxDecodedBytes) {
+        this.compression = compression;
+        this.server = server;
+        this.maxDecodedBytes = maxDecodedBytes;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Http2HeadersFrame) {
+            Http2Headers headers = ((Http2HeadersFrame) msg).headers();
+            if (server && !requestSeen) {
+                requestSeen = true;
+                acceptEncoding = headers.get(HttpHeaderNames.ACCEPT_ENCODING);
+            }
+            CharSequence contentEncoding = headers.get(HttpHeaderNames.CONTENT_ENCODING);
+            if (contentEncoding != null && decoder == null) {
+                decoder = Compression.newDecoder(contentEncoding);
+                if (decoder != null) {
+                    headers.remove(HttpHeaderNames.CONTENT_ENCODING);
+                    headers.remove(HttpHeaderNames.CONTENT_LENGTH);
+                }
+            }
+        } else if (msg instanceof Http2DataFrame && (decoder != null || decodeFailed)) {
+            Http2DataFrame frame = (Http2DataFrame) msg;
+            if (decodeFailed) {
+                // 이미 실패를 알린 바디의 나머지는 버리고 END_STREAM 만 전달
+                frame.release();
+                if (frame.isEndStream()) {
+                    ctx.fireChannelRead(new DefaultHttp2DataFrame(true).stream(frame.stream()));
+                } else {
+                    ctx.read();
+                }
+                return;
+            }
+            pendingInput = frame.content();
+            pendingEndStream = frame.isEndStream();
+            pendingStream = frame.stream();
+            inflate(ctx);
+            // autoRead 면 뒤 핸들러가 read 를 따로 요청하지 않으므로 이어서 풂 (넘긴 DATA 는 그때마다 처리됨)
+            while (pendingInput != null && ctx.channel().config().isAutoRead()) {
+                inflate(ctx);
+            }
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void read(ChannelHandlerContext ctx) {
+        if (pendingInput != null) {
+            // 아직 풀지 않은 DATA 가 있으면 소켓에서 읽지 않고 그것을 이어서 풂
+            if (inflate(ctx)) {
+                ctx.fireChannelReadComplete();
+            }
+        } else {
+            ctx.read();
+        }
+    }
+
+    /**
+     * pendingInput 을 FORWARD_BYTES 가 모이거나 다 쓸 때까지 풀어서 DATA 하나로 넘김
+     *
+     * @return 뒤로 무언가 넘겼으면 true
+     */
+    private boolean inflate(ChannelHandlerContext ctx) {
+        CompositeByteBuf decoded = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+        boolean endStream = false;
+        try {
+            while (decoded.readableBytes() < FORWARD_BYTES && pendingInput.isReadable()) {
+                decoder.writeInbound(pendingInput.readRetainedSlice(Math.min(INFLATE_STEP, pendingInput.readableBytes())));
+                drainInbound(decoder, decoded);
+            }
+            if (!pendingInput.isReadable()) {
+                pendingInput.release();
+                pendingInput = null;
+                endStream = pendingEndStream;
+                if (endStream) {
+                    decoder.finish();
+                    drainInbound(decoder, decoded);
+                }
+            }
+        } catch (Throwable t) {
+            // 잘못된 압축 데이터
+            decoded.release();
+            failDecode(ctx, t);
+            return true;
+        }
+        decodedBytes += decoded.readableBytes();
+        if (decodedBytes > maxDecodedBytes) {
+            decoded.release();
+            failDecode(ctx, new TooLongFrameException("decompressed body exceeds " + maxDecodedBytes + " bytes"));
+            return true;
+        }
+        if (!decoded.isReadable() && !endStream) {
+            // 풀린 게 없으면 다음 조각을 읽음 (뒤 핸들러가 autoRead 를 끄고 DATA 마다 read 하는 경우 대비)
+            decoded.release();
+            ctx.read();
+            return false;
+        }
+        ctx.fireChannelRead(new DefaultHttp2DataFrame(decoded, endStream).stream(pendingStream));
+        return true;
+    }
+
+    /**
+     * 더 풀지 않고 뒤 핸들러에 실패를 알림 (server2 의 StreamHandler 는 상한 초과면 413 으로 응답).
+     * 받은 DATA 가 END_STREAM 이었으면 그것도 전달
+     */
+    private void failDecode(ChannelHandlerContext ctx, Throwable cause) {
+        decodeFailed = true;
+        boolean endStream = pendingEndStream;
+        if (pendingInput != null) {
+            pendingInput.release();
+            pendingInput = null;
+        }
+        decoder.finishAndReleaseAll();
+        decoder = null;
+        ctx.fireExceptionCaught(cause);
+        if (endStream) {
+            ctx.fireChannelRead(new DefaultHttp2DataFrame(true).stream(pendingStream));
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof Http2HeadersFrame && !headersSent) {
+            headersSent = true;
+            Http2HeadersFrame frame = (Http2HeadersFrame) msg;
+            Http2Headers headers = frame.headers();
+            // accept-encoding 은 요청 헤더이므로 트레일러에는 붙이지 않음
+            if (!server && !headers.contains(HttpHeaderNames.ACCEPT_ENCODING)) {
+                headers = copyIfReadOnly(headers).set(HttpHeaderNames.ACCEPT_ENCODING, compression.acceptEncoding());
+                frame = headersFrame(frame, headers);
+            }
+            if (frame.isEndStream() || !compression.isEnabled()) {
+                ctx.write(frame, promise);
+                return;
+            }
+            CharSequence contentLength = headers.get(HttpHeaderNames.CONTENT_LENGTH);
+            if (contentLength != null) {
+                ctx.write(startEncoding(frame, Long.parseLong(contentLength.toString())), promise);
+            } else {
+                pendingHeaders = frame;
+                pendingPromise = promise;
+            }
+            return;
+        }
+        if (msg instanceof Http2HeadersFrame && encoder != null && ((Http2HeadersFrame) msg).isEndStream()) {
+            // 트레일러로 끝나는 경우 압축기에 남은 바이트를 먼저 내보냄
+            encoder.finish();
+            ByteBuf rest = drainOutbound(ctx, encoder);
+            if (rest.isReadable()) {
+                ctx.write(new DefaultHttp2DataFrame(rest, false).stream(((Http2HeadersFrame) msg).stream()));
+            } else {
+                rest.release();
+            }
+        }
+        if (msg instanceof Http2DataFrame) {
+            Http2DataFrame frame = (Http2DataFrame) msg;
+            if (pendingHeaders != null) {
+                Http2HeadersFrame headers = startEncoding(pendingHeaders,
+                    frame.isEndStream() ? frame.content().readableBytes() : -1);
+                ChannelPromise headersPromise = pendingPromise;
+                pendingHeaders = null;
+                pendingPromise = null;
+                ctx.write(headers, headersPromise);
+            }
+            if (encoder != null) {
+                boolean endStream = frame.isEndStream();
+                encoder.writeOutbound(frame.content());
+                if (endStream) {
+                    encoder.finish();
+                }
+                ByteBuf encoded = drainOutbound(ctx, encoder);
+                if (!encoded.isReadable() && !endStream) {
+                    encoded.release();
+                    promise.setSuccess();
+                    return;
+                }
+                msg = new DefaultHttp2DataFrame(encoded, endStream).stream(frame.stream());
+            }
+        }
+        ctx.write(msg, promise);
+    }
+
+    private Http2HeadersFrame startEncoding(Http2HeadersFrame frame, long length) {
+        Http2Headers headers = frame.headers();
+        CharSequence encoding = server
+            ? compression.responseEncoding(acceptEncoding, headers, length)
+            : compression.requestEncoding(headers, length);
+        if (encoding == null) {
+            return frame;
+        }
+        encoder = Compression.newEncoder(encoding);
+        if (encoder == null) {
+            return frame;
+        }
+        return headersFrame(frame, Compression.withEncoding(headers, encoding));
+    }
+
+    private static Http2Headers copyIfReadOnly(Http2Headers headers) {
+        return headers instanceof DefaultHttp2Headers ? headers : new DefaultHttp2Headers().set(headers);
+    }
+
+    private static Http2HeadersFrame headersFrame(Http2HeadersFrame original, Http2Headers headers) {
+        return new DefaultHttp2HeadersFrame(headers, original.isEndStream(), original.padding())
+            .stream(original.stream());
+    }
+
+    /** 압축기가 내놓은 바이트, 없으면 빈 버퍼 */
+    private static ByteBuf drainOutbound(ChannelHandlerContext ctx, EmbeddedChannel channel) {
+        CompositeByteBuf out = null;
+        ByteBuf buf;
+        while ((buf = channel.readOutbound()) != null) {
+            if (!buf.isReadable()) {
+                buf.release();
+                continue;
+            }
+            if (out == null) {
+                out = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+            }
+            out.addComponent(true, buf);
+        }
+        return out != null ? out : Unpooled.EMPTY_BUFFER;
+    }
+
+    /** 압축 해제기가 내놓은 바이트를 out 에 붙임 */
+    private static void drainInbound(EmbeddedChannel channel, CompositeByteBuf out) {
+        ByteBuf buf;
+        while ((buf = channel.readInbound()) != null) {
+            if (buf.isReadable()) {
+                out.addComponent(true, buf);
+            } else {
+                buf.release();
+            }
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        cleanup();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cleanup();
+        super.channelInactive(ctx);
+    }
+
+    private void cleanup() {
+        if (pendingInput != null) {
+            pendingInput.release();
+            pendingInput = null;
+        }
+        if (pendingPromise != null) {
+            pendingPromise.tryFailure(new ClosedChannelException());
+            pendingHeaders = null;
+            pendingPromise = null;
+        }
+        if (decoder != null) {
+            decoder.finishAndReleaseAll();
+            decoder = null;
+        }
+        if (encoder != null) {
+            encoder.finishAndReleaseAll();
+            encoder = null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package common;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2HeadersEncoder;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.util.AsciiString;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.Arrays;
+
+/**
+ * 서버/클라이언트가 공통으로 쓰는 HTTP/2 로컬 설정.
+ *
+ * <pre>
+ * -Dhttp2.initialWindowSize=65535        스트림 초기 수신 윈도우 (커넥션 윈도우도 최소 이 크기로 늘림)
+ * -Dhttp2.maxFrameSize=16384
+ * -Dhttp2.maxConcurrentStreams=(무제한)  서버는 지정하지 않으면 {@link ConnectionLimits} 의 값
+ * -Dhttp2.headerTableSize=4096
+ * -Dhttp2.maxHeaderListSize=8192
+ * -Dhttp2.window.autoTune=true           PING RTT 로 BDP 를 추정해 수신 윈도우를 키움 ({@link WindowTuner})
+ * -Dhttp2.window.max=16777216            자동 조정 시 윈도우 상한
+ * -Dhttp2.hpack.sensitiveHeaders=authorization,proxy-authorization,set-cookie
+ *                                        HPACK 동적 테이블에 넣지 않을(never-indexed) 헤더
+ * </pre>
+ *
+ * 지정하지 않은 값은 {@link Http2Settings#defaultSettings()} 를 따릅니다.
+ */
+public final class Http2Config {
+
+    private Http2Config() {
+    }
+
+    /** 매번 새 객체를 반환하므로 호출자가 수정해도 됨 */
+    public static Http2Settings settings() {
+        Http2Settings settings = Http2Settings.defaultSettings();
+        String v;
+        if ((v = SystemPropertyUtil.get("http2.initialWindowSize")) != null) {
+            settings.initialWindowSize(Integer.parseInt(v));
+        }
+        if ((v = SystemPropertyUtil.get("http2.maxFrameSize")) != null) {
+            settings.maxFrameSize(Integer.parseInt(v));
+        }
+        if ((v = SystemPropertyUtil.get("http2.maxConcurrentStreams")) != null) {
+            settings.maxConcurrentStreams(Long.parseLong(v));
+        }
+        if ((v = SystemPropertyUtil.get("http2.headerTableSize")) != null) {
+            settings.headerTableSize(Long.parseLong(v));
+        }
+        if ((v = SystemPropertyUtil.get("http2.maxHeaderListSize")) != null) {
+            settings.maxHeaderListSize(Long.parseLong(v));
+        }
+        return settings;
+    }
+
+    /** settings 에 지정된 초기 윈도우, 없으면 프로토콜 기본값 */
+    public static int initialWindowSize(Http2Settings settings) {
+        Integer size = settings.initialWindowSize();
+        return size != null ? size : Http2CodecUtil.DEFAULT_WINDOW_SIZE;
+    }
+
+    /**
+     * 헤더 압축 정책. 지정한 헤더는 값과 상관없이, cookie 는 추측하기 쉬운 짧은 값(20 bytes 미만, RFC 7541 7.1.3)만
+     * never-indexed 로 보냅니다. 나머지는 동적 테이블에 넣어 반복되는 헤더를 1~2 bytes 로 줄입니다.
+     */
+    public static Http2HeadersEncoder.SensitivityDetector sensitivityDetector() {
+        AsciiString[] names = Arrays.stream(SystemPropertyUtil
+                .get("http2.hpack.sensitiveHeaders", "authorization,proxy-authorization,set-cookie")
+                .split(","))
+            .map(String::trim)
+            .filter(name -> !name.isEmpty())
+            .map(AsciiString::of)
+            .toArray(AsciiString[]::new);
+        return (name, value) -> {
+            for (AsciiString sensitive : names) {
+                if (sensitive.contentEqualsIgnoreCase(name)) {
+                    return true;
+                }
+            }
+            return HttpHeaderNames.COOKIE.contentEqualsIgnoreCase(name) && value.length() < 20;
+        };
+    }
+
+    public static boolean autoTuneWindow() {
+        return SystemPropertyUtil.getBoolean("http2.window.autoTune", true);
+    }
+
+    public static int maxWindowSize() {
+        return SystemPropertyUtil.getInt("http2.window.max", 16 * 1024 * 1024);
+    }
+}
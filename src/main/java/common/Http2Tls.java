@@ -0,0 +1,151 @@
+package common;
+
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+import java.io.File;
+import java.security.cert.CertificateException;
+import java.util.Locale;
+
+/**
+ * TLS(h2, ALPN) 설정. SslContext 는 만들 때 비용이 크므로 시작 시 한 번 만들어 모든 커넥션이 공유합니다.
+ *
+ * <ul>
+ *   <li>provider - netty-tcnative(OpenSSL/BoringSSL) 가 있으면 OpenSSL, 없으면 JDK.
+ *       OpenSSL 은 핸드셰이크와 레코드 암복호화가 JDK 보다 빠르고 할당도 적음
+ *       (빌드에서 {@code -Ptcnative} 로 netty-tcnative-boringssl-static 을 런타임 의존성에 추가)</li>
+ *   <li>ALPN 으로 h2 만 협상하고, HTTP/2 가 허용하는 cipher (RFC 7540 9.2) 만 씀</li>
+ *   <li>세션 재개 - 서버는 세션 캐시/티켓, 클라이언트는 host:port 별 세션 캐시로 재접속 시 전체 핸드셰이크를 생략
+ *       (클라이언트는 {@link SslContext#newHandler(io.netty.buffer.ByteBufAllocator, String, int)} 로 대상을 넘겨야 재개됨)</li>
+ * </ul>
+ *
+ * <pre>
+ * -Dhttp2.tls=false                       true 면 h2c 대신 TLS(h2) 로 listen/연결
+ * -Dhttp2.tls.provider=auto               auto | openssl | jdk
+ * -Dhttp2.tls.cert= -Dhttp2.tls.key=      서버 인증서/PKCS#8 키 (PEM), 없으면 시작 시 자체 서명 인증서를 만듦
+ *                                         (JDK 17 에서는 --add-exports java.base/sun.security.x509=ALL-UNNAMED 필요)
+ * -Dhttp2.tls.trustCert=                  클라이언트가 신뢰할 인증서 (PEM), 없으면 JDK 기본 trust store
+ * -Dhttp2.tls.insecure=false              클라이언트가 인증서를 검증하지 않음 (자체 서명 인증서 테스트용)
+ * -Dhttp2.tls.sessionCacheSize=0          세션 캐시 크기 (0 이면 provider 기본값)
+ * -Dhttp2.tls.sessionTimeout=0            세션 유효 시간(초) (0 이면 provider 기본값)
+ * </pre>
+ */
+public final class Http2Tls {
+
+    private Http2Tls() {
+    }
+
+    public static boolean enabled() {
+        return SystemPropertyUtil.getBoolean("http2.tls", false);
+    }
+
+    /** 설정된 provider, auto 면 ALPN 을 지원하는 OpenSSL 이 있을 때 OpenSSL */
+    public static SslProvider provider() {
+        String provider = SystemPropertyUtil.get("http2.tls.provider", "auto").toLowerCase(Locale.ROOT);
+        switch (provider) {
+            case "openssl":
+                return SslProvider.OPENSSL;
+            case "jdk":
+                return SslProvider.JDK;
+            case "auto":
+                return OpenSsl.isAvailable() && SslProvider.isAlpnSupported(SslProvider.OPENSSL)
+                    ? SslProvider.OPENSSL
+                    : SslProvider.JDK;
+            default:
+                throw new IllegalArgumentException("http2.tls.provider: " + provider);
+        }
+    }
+
+    /** TLS 를 켜지 않았으면 null */
+    public static SslContext serverContextFromConfig() throws SSLException, CertificateException {
+        return enabled() ? serverContext() : null;
+    }
+
+    /** TLS 를 켜지 않았으면 null */
+    public static SslContext clientContextFromConfig() throws SSLException {
+        return enabled() ? clientContext() : null;
+    }
+
+    public static SslContext serverContext() throws SSLException, CertificateException {
+        String cert = SystemPropertyUtil.get("http2.tls.cert");
+        String key = SystemPropertyUtil.get("http2.tls.key");
+        SslContextBuilder builder;
+        if (cert != null && key != null) {
+            builder = SslContextBuilder.forServer(new File(cert), new File(key));
+        } else {
+            SelfSignedCertificate ssc = new SelfSignedCertificate("localhost");
+            builder = SslContextBuilder.forServer(ssc.certificate(), ssc.privateKey());
+        }
+        return configure(builder).build();
+    }
+
+    public static SslContext clientContext() throws SSLException {
+        SslContextBuilder builder = SslContextBuilder.forClient();
+        String trustCert = SystemPropertyUtil.get("http2.tls.trustCert");
+        if (trustCert != null) {
+            builder.trustManager(new File(trustCert));
+        } else if (SystemPropertyUtil.getBoolean("http2.tls.insecure", false)) {
+            builder.trustManager(InsecureTrustManagerFactory.INSTANCE);
+        }
+        return configure(builder).build();
+    }
+
+    /**
+     * 클라이언트 커넥션에서 h2 를 쓸 수 있게 되면 완료되는 future.
+     * TLS 가 아니면 바로 완료하고, 핸드셰이크 실패나 ALPN 으로 h2 가 협상되지 않으면 커넥션을 닫고 실패로 완료
+     */
+    public static Future<Channel> negotiated(Channel ch) {
+        SslHandler ssl = ch.pipeline().get(SslHandler.class);
+        if (ssl == null) {
+            return ch.eventLoop().newSucceededFuture(ch);
+        }
+        Promise<Channel> promise = ch.eventLoop().newPromise();
+        ssl.handshakeFuture().addListener((Future<Channel> f) -> {
+            if (!f.isSuccess()) {
+                promise.tryFailure(f.cause());
+            } else if (!ApplicationProtocolNames.HTTP_2.equals(ssl.applicationProtocol())) {
+                ch.close();
+                promise.tryFailure(new SSLHandshakeException("ALPN did not negotiate h2: " + ssl.applicationProtocol()));
+            } else {
+                promise.trySuccess(ch);
+            }
+        });
+        return promise;
+    }
+
+    private static SslContextBuilder configure(SslContextBuilder builder) {
+        builder.sslProvider(provider())
+            .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+            // JDK provider 는 FATAL_ALERT/NO_ADVERTISE 조합만 지원하므로 협상 실패는 받은 쪽에서 처리
+            // (서버는 server2.Http2AlpnHandler, 클라이언트는 negotiated)
+            .applicationProtocolConfig(new ApplicationProtocolConfig(
+                ApplicationProtocolConfig.Protocol.ALPN,
+                ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                ApplicationProtocolNames.HTTP_2));
+        long cacheSize = SystemPropertyUtil.getLong("http2.tls.sessionCacheSize", 0);
+        if (cacheSize > 0) {
+            builder.sessionCacheSize(cacheSize);
+        }
+        long timeout = SystemPropertyUtil.getLong("http2.tls.sessionTimeout", 0);
+        if (timeout > 0) {
+            builder.sessionTimeout(timeout);
+        }
+        return builder;
+    }
+}
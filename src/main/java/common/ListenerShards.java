@@ -0,0 +1,112 @@
+package common;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.unix.UnixChannelOption;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SO_REUSEPORT 로 같은 포트에 리스닝 소켓을 여러 개 열어 accept 를 여러 코어로 나눕니다 (네이티브 전송만).
+ * 리스닝 소켓이 하나면 boss 스레드 하나가 모든 accept 를 처리하므로, 페일오버 직후처럼 접속이 몰리면
+ * 그 스레드가 병목이 되고 커넥션이 worker 에 고르게 퍼지지 않습니다.
+ *
+ * <ul>
+ *   <li>샤드마다 worker 이벤트 루프 하나에 리스닝 소켓을 바인드하고, 커널이 4-tuple 해시로 새 커넥션을 샤드에 나눔 (boss 를 거치지 않음)</li>
+ *   <li>affinity 면 샤드가 받은 커넥션을 그 이벤트 루프에서 처리해 accept 부터 I/O 까지 한 스레드(코어 캐시)에 머물게 하고,
+ *       아니면 worker 그룹 전체에 라운드로빈으로 배치</li>
+ *   <li>샤드별 커넥션 수는 {@link Metrics} 의 http2_shard_connections_* 로 나가며 분산이 고른지 확인할 수 있음</li>
+ * </ul>
+ *
+ * 스레드를 특정 CPU 에 고정하는 것은 JDK 만으로는 할 수 없으므로, 필요하면 worker 스레드를 taskset 등으로 고정합니다.
+ *
+ * <pre>
+ * -Dhttp2.shards=0             리스닝 소켓 수. 0 이면 끔(리스닝 소켓 하나), -1 이면 worker 이벤트 루프 수만큼
+ * -Dhttp2.shards.affinity=true 샤드가 받은 커넥션을 그 샤드의 이벤트 루프에서 처리
+ * </pre>
+ */
+public final class ListenerShards {
+
+    private final EventLoop[] loops;
+    private final EventLoopGroup workerGroup;
+    private final boolean affinity;
+
+    /**
+     * @param workerGroup 리스닝 소켓을 나눠 가질 worker 그룹
+     * @param shards      리스닝 소켓 수 (worker 이벤트 루프 수 이하로 제한)
+     */
+    public ListenerShards(EventLoopGroup workerGroup, int shards, boolean affinity) {
+        List<EventLoop> all = new ArrayList<>();
+        for (EventExecutor executor : workerGroup) {
+            all.add((EventLoop) executor);
+        }
+        int n = shards < 0 ? all.size() : Math.min(shards, all.size());
+        if (n < 1) {
+            throw new IllegalArgumentException("shards: " + shards);
+        }
+        this.loops = all.subList(0, n).toArray(new EventLoop[0]);
+        this.workerGroup = workerGroup;
+        this.affinity = affinity;
+        Metrics.instance().shards(n);
+    }
+
+    /** 설정대로 만들고, 꺼져 있거나 전송 계층이 SO_REUSEPORT 를 지원하지 않으면 null */
+    public static ListenerShards fromConfig(Transport transport, EventLoopGroup workerGroup) {
+        int shards = SystemPropertyUtil.getInt("http2.shards", 0);
+        if (shards == 0) {
+            return null;
+        }
+        if (!transport.supportsReusePort()) {
+            System.err.println("[WARN] " + transport + " does not support SO_REUSEPORT, using a single listener");
+            return null;
+        }
+        return new ListenerShards(workerGroup, shards, SystemPropertyUtil.getBoolean("http2.shards.affinity", true));
+    }
+
+    public int size() {
+        return loops.length;
+    }
+
+    /**
+     * 이벤트 루프 그룹만 빼고 설정을 마친 bootstrap 을 샤드마다 복제해, 샤드의 이벤트 루프로 같은 포트에 바인드합니다.
+     * 자식 핸들러(@Sharable 인 ChannelInitializer)는 샤드별 커넥션 수를 세는 초기화 뒤에 그대로 붙습니다.
+     *
+     * @return 샤드 순서대로의 리스닝 채널
+     */
+    public List<Channel> bind(ServerBootstrap bootstrap, int port) throws InterruptedException {
+        ChannelHandler childHandler = bootstrap.config().childHandler();
+        List<Channel> listeners = new ArrayList<>(loops.length);
+        try {
+            for (int i = 0; i < loops.length; i++) {
+                int shard = i;
+                Channel listener = bootstrap.clone()
+                    .group(loops[i], affinity ? loops[i] : workerGroup)
+                    .option(UnixChannelOption.SO_REUSEPORT, true)
+                    .childHandler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            Metrics.instance().shardConnectionOpened(shard);
+                            ch.closeFuture().addListener(f -> Metrics.instance().shardConnectionClosed(shard));
+                            ch.pipeline().addLast(childHandler);
+                        }
+                    })
+                    .bind(port).sync().channel();
+                listeners.add(listener);
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            // 일부만 바인드됐으면 닫고 실패
+            for (Channel listener : listeners) {
+                listener.close();
+            }
+            throw e;
+        }
+        return listeners;
+    }
+}
@@ -0,0 +1,270 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http2.Http2Headers;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 서버 런타임 지표. 모든 값은 스레드 간 경합이 적은 {@link LongAdder} 로 누적하고,
+ * {@link #handle(Request)} 로 Prometheus 텍스트 형식(0.0.4)을 내보냅니다 (라우터에 GET /metrics 로 등록).
+ *
+ * 초당 스트림 수처럼 비율이 필요한 값은 *_total 카운터에 Prometheus 의 rate() 를 적용해 구합니다.
+ */
+public final class Metrics implements RequestHandler {
+
+    // 요청 지연 히스토그램 버킷 상한 (초)
+    private static final double[] LATENCY_BUCKETS = {
+        0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    private static final long[] LATENCY_BUCKET_NANOS = new long[LATENCY_BUCKETS.length];
+    private static final String[] LATENCY_BUCKET_LABELS = new String[LATENCY_BUCKETS.length];
+
+    static {
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            LATENCY_BUCKET_NANOS[i] = (long) (LATENCY_BUCKETS[i] * TimeUnit.SECONDS.toNanos(1));
+            LATENCY_BUCKET_LABELS[i] = BigDecimal.valueOf(LATENCY_BUCKETS[i]).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private static final Http2Headers CONTENT_HEADERS = ResponseHeaders.of(HttpResponseStatus.OK,
+        HttpHeaderNames.CONTENT_TYPE, ResponseHeaders.PROMETHEUS_TEXT);
+
+    // 위의 버킷 배열이 먼저 초기화되어야 하므로 여기서 생성
+    private static final Metrics INSTANCE = new Metrics();
+
+    private final LongAdder connectionsActive = new LongAdder();
+    private final LongAdder connectionsTotal = new LongAdder();
+    private final LongAdder streamsActive = new LongAdder();
+    private final LongAdder streamsTotal = new LongAdder();
+    private final LongAdder dataReceivedBytes = new LongAdder();
+    private final LongAdder dataSentBytes = new LongAdder();
+    private final LongAdder rstStreamReceived = new LongAdder();
+    private final LongAdder goAwayReceived = new LongAdder();
+    private final LongAdder flowControlBlocked = new LongAdder();
+    private final LongAdder flowControlBlockedNanos = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder flushRequests = new LongAdder();
+    private final LongAdder socketFlushes = new LongAdder();
+    private final LongAdder limitStreamResets = new LongAdder();
+    private final LongAdder limitGoAways = new LongAdder();
+    // 1xx ~ 5xx, 인덱스 0 은 그 외
+    private final LongAdder[] responses = adders(6);
+    // 버킷별 개수 (누적 아님), 마지막은 +Inf
+    private final LongAdder[] latencyBuckets = adders(LATENCY_BUCKETS.length + 1);
+    private final LongAdder latencySumNanos = new LongAdder();
+    // SO_REUSEPORT 리스닝 소켓(샤드)별 커넥션, 샤드를 쓰지 않으면 비어 있음
+    private volatile LongAdder[] shardConnectionsActive = new LongAdder[0];
+    private volatile LongAdder[] shardConnectionsTotal = new LongAdder[0];
+
+    private Metrics() {
+    }
+
+    public static Metrics instance() {
+        return INSTANCE;
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    public void connectionOpened() {
+        connectionsActive.increment();
+        connectionsTotal.increment();
+    }
+
+    public void connectionClosed() {
+        connectionsActive.decrement();
+    }
+
+    public void streamOpened() {
+        streamsActive.increment();
+        streamsTotal.increment();
+    }
+
+    public void streamClosed() {
+        streamsActive.decrement();
+    }
+
+    public void dataReceived(long bytes) {
+        dataReceivedBytes.add(bytes);
+    }
+
+    public void dataSent(long bytes) {
+        dataSentBytes.add(bytes);
+    }
+
+    public void rstStreamReceived() {
+        rstStreamReceived.increment();
+    }
+
+    public void goAwayReceived() {
+        goAwayReceived.increment();
+    }
+
+    /** 흐름제어 윈도우가 바닥나 쓰지 못하고 기다린 구간 하나 */
+    public void flowControlBlocked(long nanos) {
+        flowControlBlocked.increment();
+        flowControlBlockedNanos.add(nanos);
+    }
+
+    /** {@link ResponseCache} 조회 결과 */
+    public void cacheHit() {
+        cacheHits.increment();
+    }
+
+    public void cacheMiss() {
+        cacheMisses.increment();
+    }
+
+    /** {@link FlushCoalescingHandler} 가 받은 flush 와 실제로 소켓까지 보낸 flush */
+    public void flushRequested() {
+        flushRequests.increment();
+    }
+
+    public void flushed() {
+        socketFlushes.increment();
+    }
+
+    /** {@link ConnectionLimits} 를 넘어 RST_STREAM(ENHANCE_YOUR_CALM) 으로 끊은 스트림 */
+    public void streamLimited() {
+        limitStreamResets.increment();
+    }
+
+    /** {@link ConnectionLimits} 를 넘어 GOAWAY(ENHANCE_YOUR_CALM) 으로 닫은 커넥션 */
+    public void connectionLimited() {
+        limitGoAways.increment();
+    }
+
+    /** {@link ListenerShards} 의 샤드 수, 샤드별 지표를 준비 */
+    public synchronized void shards(int n) {
+        if (n > shardConnectionsActive.length) {
+            shardConnectionsActive = adders(n);
+            shardConnectionsTotal = adders(n);
+        }
+    }
+
+    /** 샤드의 리스닝 소켓이 받은 커넥션 */
+    public void shardConnectionOpened(int shard) {
+        shardConnectionsActive[shard].increment();
+        shardConnectionsTotal[shard].increment();
+    }
+
+    public void shardConnectionClosed(int shard) {
+        shardConnectionsActive[shard].decrement();
+    }
+
+    /**
+     * 응답 하나가 끝남.
+     *
+     * @param status     응답 :status
+     * @param startNanos 요청 HEADERS 를 받은 시각
+     */
+    public void responseSent(CharSequence status, long startNanos) {
+        int code = status != null && status.length() == 3 ? status.charAt(0) - '0' : 0;
+        responses[code >= 1 && code <= 5 ? code : 0].increment();
+
+        long nanos = System.nanoTime() - startNanos;
+        latencySumNanos.add(nanos);
+        int i = 0;
+        while (i < LATENCY_BUCKET_NANOS.length && nanos > LATENCY_BUCKET_NANOS[i]) {
+            i++;
+        }
+        latencyBuckets[i].increment();
+    }
+
+    @Override
+    public Response handle(Request request) {
+        String text = render();
+        ByteBuf content = ByteBufUtil.writeUtf8(request.alloc(), text);
+        return new Response(CONTENT_HEADERS, content);
+    }
+
+    /** Prometheus 텍스트 형식 */
+    public String render() {
+        StringBuilder sb = new StringBuilder(2048);
+        gauge(sb, "http2_connections_active", "Open HTTP/2 connections", connectionsActive.sum());
+        counter(sb, "http2_connections_total", "Accepted HTTP/2 connections", connectionsTotal.sum());
+        gauge(sb, "http2_streams_active", "Open HTTP/2 streams", streamsActive.sum());
+        counter(sb, "http2_streams_total", "Opened HTTP/2 streams", streamsTotal.sum());
+        counter(sb, "http2_data_received_bytes_total", "DATA frame bytes received (including padding)", dataReceivedBytes.sum());
+        counter(sb, "http2_data_sent_bytes_total", "DATA frame bytes sent", dataSentBytes.sum());
+        counter(sb, "http2_rst_stream_received_total", "RST_STREAM frames received", rstStreamReceived.sum());
+        counter(sb, "http2_goaway_received_total", "GOAWAY frames received", goAwayReceived.sum());
+        counter(sb, "http2_flow_control_blocked_total", "Times a stream was blocked on a flow-control window", flowControlBlocked.sum());
+        counter(sb, "http2_flow_control_blocked_seconds_total", "Time streams spent blocked on flow-control windows",
+            flowControlBlockedNanos.sum() / 1e9);
+        counter(sb, "http2_flush_requests_total", "Flushes requested on coalescing connections", flushRequests.sum());
+        counter(sb, "http2_socket_flushes_total", "Flushes written to the socket after coalescing", socketFlushes.sum());
+        counter(sb, "http2_limit_rst_stream_total", "Streams reset for exceeding connection limits", limitStreamResets.sum());
+        counter(sb, "http2_limit_goaway_total", "Connections closed for exceeding connection limits", limitGoAways.sum());
+
+        sb.append("# HELP http2_response_cache_requests_total Response cache lookups\n");
+        sb.append("# TYPE http2_response_cache_requests_total counter\n");
+        sb.append("http2_response_cache_requests_total{result=\"hit\"} ").append(cacheHits.sum()).append('\n');
+        sb.append("http2_response_cache_requests_total{result=\"miss\"} ").append(cacheMisses.sum()).append('\n');
+
+        LongAdder[] shardActive = shardConnectionsActive;
+        LongAdder[] shardTotal = shardConnectionsTotal;
+        if (shardActive.length > 0) {
+            sb.append("# HELP http2_shard_connections_active Open connections by listener shard\n");
+            sb.append("# TYPE http2_shard_connections_active gauge\n");
+            for (int i = 0; i < shardActive.length; i++) {
+                sb.append("http2_shard_connections_active{shard=\"").append(i).append("\"} ").append(shardActive[i].sum()).append('\n');
+            }
+            sb.append("# HELP http2_shard_connections_total Connections accepted by listener shard\n");
+            sb.append("# TYPE http2_shard_connections_total counter\n");
+            for (int i = 0; i < shardTotal.length; i++) {
+                sb.append("http2_shard_connections_total{shard=\"").append(i).append("\"} ").append(shardTotal[i].sum()).append('\n');
+            }
+        }
+
+        sb.append("# HELP http2_responses_total Responses by status class\n");
+        sb.append("# TYPE http2_responses_total counter\n");
+        for (int i = 1; i <= 5; i++) {
+            sb.append("http2_responses_total{status=\"").append(i).append("xx\"} ").append(responses[i].sum()).append('\n');
+        }
+        sb.append("http2_responses_total{status=\"other\"} ").append(responses[0].sum()).append('\n');
+
+        sb.append("# HELP http2_request_duration_seconds Time from request HEADERS to response END_STREAM\n");
+        sb.append("# TYPE http2_request_duration_seconds histogram\n");
+        long cumulative = 0;
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            cumulative += latencyBuckets[i].sum();
+            sb.append("http2_request_duration_seconds_bucket{le=\"")
+                .append(i < LATENCY_BUCKETS.length ? LATENCY_BUCKET_LABELS[i] : "+Inf")
+                .append("\"} ").append(cumulative).append('\n');
+        }
+        sb.append("http2_request_duration_seconds_sum ").append(latencySumNanos.sum() / 1e9).append('\n');
+        sb.append("http2_request_duration_seconds_count ").append(cumulative).append('\n');
+        return sb.toString();
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, long value) {
+        sample(sb, name, help, "gauge").append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, long value) {
+        sample(sb, name, help, "counter").append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, double value) {
+        sample(sb, name, help, "counter").append(value).append('\n');
+    }
+
+    private static StringBuilder sample(StringBuilder sb, String name, String help, String type) {
+        return sb.append("# HELP ").append(name).append(' ').append(help).append('\n')
+            .append("# TYPE ").append(name).append(' ').append(type).append('\n')
+            .append(name).append(' ');
+    }
+}
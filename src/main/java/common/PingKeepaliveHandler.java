@@ -0,0 +1,247 @@
+package common;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http2.DefaultHttp2PingFrame;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2PingFrame;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.concurrent.Future;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 클라이언트 커넥션의 PING keepalive 와 RTT 측정.
+ * SO_KEEPALIVE 는 기본 2시간 뒤에야 동작하므로, 상대가 사라진 half-open 커넥션은 그 위의 요청이 멈춘 뒤에야 드러납니다.
+ *
+ * <ul>
+ *   <li>연결되면(TLS 면 핸드셰이크 후) 바로, 이후 interval 마다 PING 을 보내고 ACK 까지의 시간으로
+ *       평활화된 RTT 를 계산 (RFC 6298 의 SRTT/RTTVAR)</li>
+ *   <li>ACK 를 기다리는 시간은 RTO 처럼 srtt + 4*rttvar 를 [minTimeout, timeout] 으로 제한한 값 (측정 전에는 timeout).
+ *       그 안에 ACK 가 없으면 커넥션이 죽은 것으로 보고 {@link AckTimeoutEvent} 를 뒤의 핸들러에 보내 새 스트림 대상에서 바로 뺀 뒤,
+ *       GOAWAY 없이 바로 닫음. 그 위의 스트림은 바로 실패로 끝나고 이후 요청은 새 커넥션으로 감</li>
+ *   <li>요청 타임아웃 - 응답을 기다리는 스트림이 있는 동안 ACK 대기 시간마다 커넥션을 확인해, 그만큼 아무것도 읽지 못했으면
+ *       다음 interval 을 기다리지 않고 PING 을 보냄. 죽은 커넥션 위의 요청은 ACK 대기 시간의 두 배 안에 실패함.
+ *       서버 처리가 느린 것과는 구분되므로 (살아 있는 서버는 처리 중에도 PING 에 답함) 느린 요청을 끊지는 않음</li>
+ *   <li>ACK 대기 시간보다 오래 아무것도 읽지 못한 커넥션에 새 요청(HEADERS)을 쓰면 같은 flush 로 PING 을 함께 보냄</li>
+ *   <li>{@link #effectiveRttNanos()} - 응답이 늦어지는 커넥션은 ACK 를 기다린 시간만큼 RTT 가 커진 것으로 보아,
+ *       커넥션 풀이 닫히기 전부터 그 커넥션을 피하게 함</li>
+ * </ul>
+ *
+ * 커넥션 파이프라인에서 Http2FrameCodec 바로 뒤(Http2MultiplexHandler 앞)에 둡니다.
+ * 서버는 코덱이 PING 에 자동으로 ACK 하므로 따로 둘 것이 없습니다.
+ *
+ * <pre>
+ * -Dhttp2.ping.interval=10         PING 주기(초), 0 이면 끔
+ * -Dhttp2.ping.timeout=10          ACK 대기 상한(초)
+ * -Dhttp2.ping.minTimeout=1000     RTT 를 측정한 뒤의 ACK 대기 하한(ms)
+ * </pre>
+ */
+public class PingKeepaliveHandler extends ChannelDuplexHandler {
+
+    /** keepalive PING payload ("keepaliv"), {@link WindowTuner#PING_CONTENT} 등 다른 PING ACK 와 구분 */
+    public static final long PING_CONTENT = 0x6b656570616c6976L;
+
+    /** PING ACK 를 받지 못해 커넥션을 닫기 직전에 뒤의 핸들러로 보내는 user event */
+    public static final class AckTimeoutEvent {
+        public static final AckTimeoutEvent INSTANCE = new AckTimeoutEvent();
+
+        private AckTimeoutEvent() {
+        }
+    }
+
+    private final long intervalNanos;
+    private final long timeoutNanos;
+    private final long minTimeoutNanos;
+
+    // RTT 는 다른 스레드(커넥션 선택)에서도 읽음
+    private volatile long srttNanos;
+    private long rttvarNanos;
+    private volatile long pingSentNanos;    // 0 이면 ACK 를 기다리는 PING 없음
+    private long lastReadNanos;
+    private Http2Connection connection;
+    private Future<?> nextPing;
+    private Future<?> ackTimeout;
+    private Future<?> requestCheck;
+
+    public PingKeepaliveHandler(long interval, long timeout, long minTimeout, TimeUnit unit) {
+        this.intervalNanos = unit.toNanos(interval);
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.minTimeoutNanos = Math.min(unit.toNanos(minTimeout), timeoutNanos);
+    }
+
+    /** 설정대로 만들고, 꺼져 있으면 null */
+    public static PingKeepaliveHandler fromConfig() {
+        long interval = SystemPropertyUtil.getLong("http2.ping.interval", 10);
+        if (interval <= 0) {
+            return null;
+        }
+        return new PingKeepaliveHandler(TimeUnit.SECONDS.toMillis(interval),
+            TimeUnit.SECONDS.toMillis(SystemPropertyUtil.getLong("http2.ping.timeout", 10)),
+            SystemPropertyUtil.getLong("http2.ping.minTimeout", 1000), TimeUnit.MILLISECONDS);
+    }
+
+    /** 평활화된 RTT, 아직 측정하지 못했으면 0 */
+    public long rttNanos() {
+        return srttNanos;
+    }
+
+    /** RTT 와 지금 ACK 를 기다리고 있는 시간 중 큰 값 (커넥션 선택용) */
+    public long effectiveRttNanos() {
+        long sent = pingSentNanos;
+        long srtt = srttNanos;
+        return sent == 0 ? srtt : Math.max(srtt, System.nanoTime() - sent);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        connection = ctx.pipeline().get(Http2FrameCodec.class).connection();
+        if (ctx.channel().isActive()) {
+            start(ctx);
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        // 앞의 코덱이 preface 를 먼저 보낸 뒤에 시작
+        ctx.fireChannelActive();
+        start(ctx);
+    }
+
+    private void start(ChannelHandlerContext ctx) {
+        lastReadNanos = System.nanoTime();
+        SslHandler ssl = ctx.pipeline().get(SslHandler.class);
+        if (ssl == null) {
+            ping(ctx);
+            return;
+        }
+        // 핸드셰이크 시간이 첫 RTT 에 섞이지 않게 함
+        ssl.handshakeFuture().addListener(f -> {
+            if (f.isSuccess()) {
+                ping(ctx);
+            }
+        });
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        lastReadNanos = System.nanoTime();
+        if (msg instanceof Http2PingFrame) {
+            Http2PingFrame ping = (Http2PingFrame) msg;
+            if (ping.ack() && ping.content() == PING_CONTENT) {
+                onAck();
+                return;
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (!(msg instanceof Http2HeadersFrame)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        boolean probe = pingSentNanos == 0 && System.nanoTime() - lastReadNanos > ackTimeoutNanos();
+        ctx.write(msg, promise);
+        if (probe) {
+            // 요청과 같은 flush 로 나감 (스트림 채널이 곧 flush 함)
+            writePing(ctx);
+        }
+        if (requestCheck == null) {
+            requestCheck = ctx.executor().schedule(() -> checkRequests(ctx), ackTimeoutNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** 응답을 기다리는 스트림이 있는데 ACK 대기 시간 동안 아무것도 읽지 못했으면 PING 으로 커넥션을 확인 */
+    private void checkRequests(ChannelHandlerContext ctx) {
+        requestCheck = null;
+        if (!ctx.channel().isActive() || connection.numActiveStreams() == 0) {
+            return;
+        }
+        long timeout = ackTimeoutNanos();
+        long silent = System.nanoTime() - lastReadNanos;
+        if (silent >= timeout && pingSentNanos == 0) {
+            writePing(ctx);
+            ctx.flush();
+        }
+        requestCheck = ctx.executor().schedule(() -> checkRequests(ctx),
+            silent >= timeout ? timeout : timeout - silent, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        cancel();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        cancel();
+    }
+
+    private void ping(ChannelHandlerContext ctx) {
+        if (!ctx.channel().isActive()) {
+            return;
+        }
+        nextPing = ctx.executor().schedule(() -> ping(ctx), intervalNanos, TimeUnit.NANOSECONDS);
+        if (pingSentNanos == 0) {
+            writePing(ctx);
+            ctx.flush();
+        }
+    }
+
+    private void writePing(ChannelHandlerContext ctx) {
+        pingSentNanos = System.nanoTime();
+        ctx.write(new DefaultHttp2PingFrame(PING_CONTENT));
+        ackTimeout = ctx.executor().schedule(() -> {
+            System.err.println("PING ACK not received in " + TimeUnit.NANOSECONDS.toMillis(ackTimeoutNanos())
+                + " ms, closing " + ctx.channel());
+            ctx.fireUserEventTriggered(AckTimeoutEvent.INSTANCE);
+            // 코덱의 close 는 GOAWAY 를 보내고 활성 스트림이 끝날 때까지 (기본 30초) 기다리므로,
+            // 답이 없는 상대에게는 코덱(과 SslHandler)을 건너뛰고 소켓을 바로 닫아 스트림이 바로 실패하게 함
+            ctx.pipeline().firstContext().close();
+        }, ackTimeoutNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void onAck() {
+        if (pingSentNanos == 0) {
+            return;
+        }
+        long rtt = Math.max(1, System.nanoTime() - pingSentNanos);
+        pingSentNanos = 0;
+        ackTimeout.cancel(false);
+        // RFC 6298 2.2, 2.3
+        if (srttNanos == 0) {
+            rttvarNanos = rtt / 2;
+            srttNanos = rtt;
+        } else {
+            rttvarNanos = (rttvarNanos * 3 + Math.abs(srttNanos - rtt)) / 4;
+            srttNanos = (srttNanos * 7 + rtt) / 8;
+        }
+    }
+
+    private long ackTimeoutNanos() {
+        long srtt = srttNanos;
+        if (srtt == 0) {
+            return timeoutNanos;
+        }
+        return Math.min(timeoutNanos, Math.max(minTimeoutNanos, srtt + 4 * rttvarNanos));
+    }
+
+    private void cancel() {
+        if (nextPing != null) {
+            nextPing.cancel(false);
+        }
+        if (ackTimeout != null) {
+            ackTimeout.cancel(false);
+        }
+        if (requestCheck != null) {
+            requestCheck.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package common;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2GoAwayFrame;
+import io.netty.handler.codec.http2.Http2ResetFrame;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.StreamBufferingEncoder;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 서버가 처리하지 않은 것이 확실한 요청의 실패. 멱등성과 관계없이 새 커넥션으로 다시 보내도 안전합니다 (RFC 9113 8.7).
+ *
+ * <ul>
+ *   <li>GOAWAY 의 last-stream-id 보다 큰 스트림 (서버 drain 등)</li>
+ *   <li>REFUSED_STREAM 으로 리셋된 스트림</li>
+ *   <li>스트림을 열기 전에 커넥션이 닫힌 경우</li>
+ *   <li>코덱(StreamBufferingEncoder)이 동시 스트림 상한 때문에 대기시키던 스트림이 GOAWAY 나 커넥션 종료로 취소된 경우</li>
+ * </ul>
+ *
+ * 그 외의 실패(응답 도중 커넥션 종료 등)는 서버가 처리했을 수 있으므로 재시도하지 않습니다.
+ */
+public final class RefusedStreamException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RefusedStreamException(String message) {
+        super(message);
+    }
+
+    public RefusedStreamException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /** 스트림 채널에 전달된 user event 가 이 스트림을 처리하지 않았다는 뜻인지 */
+    public static boolean isRefusal(Object evt) {
+        if (evt instanceof Http2GoAwayFrame) {
+            // Http2MultiplexHandler 는 last-stream-id 보다 큰 스트림에만 GOAWAY 를 전달함
+            return true;
+        }
+        return evt instanceof Http2ResetFrame
+            && ((Http2ResetFrame) evt).errorCode() == Http2Error.REFUSED_STREAM.code();
+    }
+
+    /**
+     * 닫힌 스트림 채널이 커넥션에 스트림을 만들지 못한 채(HEADERS 를 보내지 못함) 끝났는지.
+     * 대기 중이던 스트림이 취소되면 HEADERS 쓰기 실패 리스너보다 스트림 채널 종료가 먼저 전달되므로 닫힐 때 확인합니다.
+     */
+    public static boolean neverOpened(Channel streamChannel) {
+        return streamChannel instanceof Http2StreamChannel
+            && ((Http2StreamChannel) streamChannel).stream().state() == Http2Stream.State.IDLE;
+    }
+
+    /**
+     * 요청 HEADERS 쓰기 리스너. 코덱이 HEADERS 를 거부했으면(GOAWAY 를 받은 커넥션에 새 스트림 등) 서버로 아무것도 나가지 않았으므로
+     * future 를 재시도 가능한 실패로 완료합니다.
+     */
+    public static ChannelFutureListener failIfNotSent(CompletableFuture<?> result) {
+        return f -> {
+            if (!f.isSuccess() && f.cause() instanceof Http2Exception) {
+                result.completeExceptionally(new RefusedStreamException("request not sent", f.cause()));
+            }
+        };
+    }
+
+    /** 재시도해도 안전한 실패인지 (CompletionException 은 벗겨서 봄) */
+    public static boolean isRetryable(Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RefusedStreamException
+            || cause instanceof StreamBufferingEncoder.Http2GoAwayException
+            || cause instanceof Http2Exception && ((Http2Exception) cause).error() == Http2Error.REFUSED_STREAM;
+    }
+}
@@ -0,0 +1,53 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http2.Http2Headers;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 서버가 {@link RequestHandler} 에 넘기는 요청 (헤더 + 모아진 바디).
+ * 바디는 핸들러 호출이 끝나면 호출자가 해제하므로, 핸들러가 더 오래 쓰려면 retain 해야 합니다.
+ */
+public final class Request {
+    private final Http2Headers headers;
+    private final ByteBuf content;
+    private final ByteBufAllocator alloc;
+    private final Map<String, CharSequence> params;
+
+    public Request(Http2Headers headers, ByteBuf content, ByteBufAllocator alloc) {
+        this(headers, content, alloc, Collections.emptyMap());
+    }
+
+    private Request(Http2Headers headers, ByteBuf content, ByteBufAllocator alloc, Map<String, CharSequence> params) {
+        this.headers = headers;
+        this.content = content;
+        this.alloc = alloc;
+        this.params = params;
+    }
+
+    /** {@link Router} 가 경로 파라미터를 붙일 때 사용. 바디는 공유하므로 해제 책임은 그대로 원래 호출자에게 있음 */
+    Request withParams(Map<String, CharSequence> params) {
+        return new Request(headers, content, alloc, params);
+    }
+
+    public Http2Headers headers() {
+        return headers;
+    }
+
+    public ByteBuf content() {
+        return content;
+    }
+
+    /** 경로 파라미터 ({@code /users/{id}} 의 id), 없으면 null */
+    public CharSequence param(String name) {
+        return params.get(name);
+    }
+
+    /** 응답 바디를 만들 때 쓸 (채널의) 할당기 */
+    public ByteBufAllocator alloc() {
+        return alloc;
+    }
+}
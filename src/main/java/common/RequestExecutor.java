@@ -0,0 +1,170 @@
+package common;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link RequestHandler} 를 어디서 실행할지 결정하는 실행 모델.
+ *
+ * <ul>
+ *   <li>inline  - I/O 이벤트 루프에서 바로 실행 (아주 가벼운 핸들러 전용)</li>
+ *   <li>pool    - 고정 크기 스레드 풀 + 고정 크기 대기 큐</li>
+ *   <li>virtual - JDK 21 가상 스레드 (동시 실행 수 상한), JDK 21 미만이면 pool 로 대체</li>
+ * </ul>
+ *
+ * 어느 모델이든 결과 콜백은 요청이 들어온 채널의 이벤트 루프에서 호출되므로 응답 쓰기는 항상 I/O 스레드에서 일어납니다.
+ * 큐/동시 실행 수가 가득 차면 핸들러를 실행하지 않고 {@link RejectedExecutionException} 으로 콜백해
+ * 서버가 503 으로 응답하게 합니다 (backpressure).
+ *
+ * <pre>
+ * -Dhttp2.executor=inline|pool|virtual
+ * -Dhttp2.executor.threads=CPU 수 x 2     (pool)
+ * -Dhttp2.executor.queue=1024             (pool: 대기 큐 크기, virtual: 최대 동시 실행 수)
+ * </pre>
+ */
+public abstract class RequestExecutor {
+
+    private static final RequestExecutor INLINE = new RequestExecutor() {
+        @Override
+        void dispatch(Runnable task) {
+            task.run();
+        }
+
+        @Override
+        boolean isInline() {
+            return true;
+        }
+    };
+
+    public static RequestExecutor inline() {
+        return INLINE;
+    }
+
+    public static RequestExecutor boundedPool(int threads, int queueCapacity) {
+        return new ExecutorServiceExecutor(new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new DefaultThreadFactory("request-worker"),
+            new ThreadPoolExecutor.AbortPolicy()), null);
+    }
+
+    /** 가상 스레드 실행기. 사용할 수 없는 JDK 면 같은 크기 상한의 스레드 풀을 반환합니다. */
+    public static RequestExecutor virtualThreads(int maxInFlight) {
+        try {
+            ExecutorService vts = (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new ExecutorServiceExecutor(vts, new Semaphore(maxInFlight));
+        } catch (ReflectiveOperationException e) {
+            System.err.println("[WARN] virtual threads are not available on this JDK, using a thread pool");
+            return boundedPool(Runtime.getRuntime().availableProcessors() * 2, maxInFlight);
+        }
+    }
+
+    public static RequestExecutor fromSystemProperties() {
+        String mode = SystemPropertyUtil.get("http2.executor", "inline").toLowerCase(Locale.ROOT);
+        int threads = SystemPropertyUtil.getInt("http2.executor.threads", Runtime.getRuntime().availableProcessors() * 2);
+        int queue = SystemPropertyUtil.getInt("http2.executor.queue", 1024);
+        switch (mode) {
+            case "inline":
+                return inline();
+            case "pool":
+                return boundedPool(threads, queue);
+            case "virtual":
+                return virtualThreads(queue);
+            default:
+                throw new IllegalArgumentException("unknown http2.executor: " + mode);
+        }
+    }
+
+    /**
+     * handler 를 실행하고 결과를 loop 에서 callback 으로 전달합니다.
+     * 요청 바디는 handler 실행 후(또는 거부 시) 여기서 해제됩니다.
+     */
+    public final void execute(EventExecutor loop, RequestHandler handler, Request request,
+        BiConsumer<Response, Throwable> callback) {
+        Runnable task = () -> {
+            Response response = null;
+            Throwable cause = null;
+            try {
+                response = handler.handle(request);
+            } catch (Throwable t) {
+                cause = t;
+            } finally {
+                request.content().release();
+            }
+            complete(loop, callback, response, cause);
+        };
+        try {
+            dispatch(task);
+        } catch (RejectedExecutionException e) {
+            request.content().release();
+            complete(loop, callback, null, e);
+        }
+    }
+
+    private void complete(EventExecutor loop, BiConsumer<Response, Throwable> callback,
+        Response response, Throwable cause) {
+        if (isInline() || loop.inEventLoop()) {
+            callback.accept(response, cause);
+        } else {
+            loop.execute(() -> callback.accept(response, cause));
+        }
+    }
+
+    abstract void dispatch(Runnable task);
+
+    boolean isInline() {
+        return false;
+    }
+
+    public void shutdown() {
+    }
+
+    private static final class ExecutorServiceExecutor extends RequestExecutor {
+        private final ExecutorService executor;
+        // 가상 스레드는 큐가 없으므로 동시 실행 수로 상한을 둠 (null 이면 executor 의 큐가 상한)
+        private final Semaphore inFlight;
+
+        ExecutorServiceExecutor(ExecutorService executor, Semaphore inFlight) {
+            this.executor = executor;
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        void dispatch(Runnable task) {
+            if (inFlight == null) {
+                executor.execute(task);
+                return;
+            }
+            if (!inFlight.tryAcquire()) {
+                throw new RejectedExecutionException("too many requests in flight");
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package common;
+
+/**
+ * 요청 처리(비즈니스) 로직. {@link RequestExecutor} 설정에 따라 I/O 스레드 또는 별도 스레드에서 호출됩니다.
+ */
+@FunctionalInterface
+public interface RequestHandler {
+
+    /**
+     * @param request 요청. 바디는 호출이 끝나면 호출자가 해제함
+     * @return 응답. 응답 바디의 소유권은 호출자에게 넘어감
+     */
+    Response handle(Request request) throws Exception;
+}
@@ -0,0 +1,47 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http2.Http2Headers;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link RequestHandler} 가 돌려주는 응답. content 의 소유권은 응답을 쓰는 쪽(서버 핸들러)으로 넘어갑니다.
+ * headers 는 {@link ResponseHeaders} 의 공유 템플릿일 수 있으므로 응답을 받은 쪽에서 수정하지 않습니다.
+ */
+public final class Response {
+    private final Http2Headers headers;
+    private final ByteBuf content;
+
+    public Response(Http2Headers headers, ByteBuf content) {
+        this.headers = headers;
+        this.content = content;
+    }
+
+    /** 바디 없는 응답 (헤더는 공유 템플릿이므로 수정 불가) */
+    public static Response status(HttpResponseStatus status) {
+        return new Response(ResponseHeaders.status(status), Unpooled.EMPTY_BUFFER);
+    }
+
+    /** 핸들러 실패를 응답으로 변환. 실행기가 거부(과부하)하면 503, 바디 상한 초과는 413, 그 외 예외는 500 */
+    public static Response error(Throwable cause) {
+        if (cause instanceof RejectedExecutionException) {
+            return status(HttpResponseStatus.SERVICE_UNAVAILABLE);
+        }
+        if (cause instanceof TooLongFrameException) {
+            return status(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE);
+        }
+        return status(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    public Http2Headers headers() {
+        return headers;
+    }
+
+    public ByteBuf content() {
+        return content;
+    }
+}
@@ -0,0 +1,263 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.AsciiString;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 핸들러 앞에 두는 응답 캐시. {@link #cached(RequestHandler, long, TimeUnit, boolean)} 로 감싼 핸들러의
+ * 200 응답을 method + path(+ 요청 content-type 과 바디) 를 키로 TTL 동안 보관합니다.
+ *
+ * 바디는 direct ByteBuf 로 한 번 복사해 두고 {@link ByteBuf#retainedDuplicate()} 로 내보내므로 적중 시 바디 할당/인코딩이 없고,
+ * 헤더도 미리 만든 객체를 공유합니다 (공유 헤더이므로 받은 쪽에서 수정하면 안 됨).
+ * 응답에는 바디의 SHA-256 으로 만든 ETag 가 붙고, GET/HEAD 요청의 If-None-Match 가 맞으면 바디 없이 304 로 응답합니다.
+ * 그 외 method 는 캐시된 응답의 ETag 가 If-None-Match 에 맞으면 핸들러를 실행하지 않고 412 로 응답합니다 (RFC 9110 13.1.2).
+ *
+ * 키 해시로 나눈 세그먼트마다 접근 순서 LRU 이고, 세그먼트별 바이트 상한(전체 상한 / 세그먼트 수)을 넘으면 오래된 것부터 버립니다.
+ *
+ * <pre>
+ * -Dhttp2.cache.maxBytes=67108864    전체 바이트 상한, 0 이면 캐시하지 않음
+ * </pre>
+ */
+public final class ResponseCache {
+
+    private static final int SEGMENTS = 16;
+    // 키/헤더 객체 등 바디 외 크기 추정치
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long maxBytes;
+    // 이보다 큰 응답은 세그먼트를 혼자 차지하지 않도록 캐시하지 않음
+    private final long maxEntryBytes;
+
+    public ResponseCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / SEGMENTS / 4;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxBytes / SEGMENTS);
+        }
+    }
+
+    public static ResponseCache fromSystemProperties() {
+        return new ResponseCache(SystemPropertyUtil.getLong("http2.cache.maxBytes", 64L * 1024 * 1024));
+    }
+
+    /**
+     * @param byBody 요청 바디와 content-type 도 키에 포함 (결과가 바디로 정해지는 POST 등, 같은 바이트도 charset 에 따라 다르게 해석됨)
+     */
+    public RequestHandler cached(RequestHandler handler, long ttl, TimeUnit unit, boolean byBody) {
+        if (maxBytes == 0) {
+            return handler;
+        }
+        long ttlNanos = unit.toNanos(ttl);
+        return request -> handle(handler, ttlNanos, byBody, request);
+    }
+
+    private Response handle(RequestHandler handler, long ttlNanos, boolean byBody, Request request) throws Exception {
+        Http2Headers headers = request.headers();
+        CharSequence method = headers.method();
+        CharSequence path = headers.path();
+        if (method == null || path == null) {
+            return handler.handle(request);
+        }
+        Key key = byBody ? new Key(method, path, headers.get(HttpHeaderNames.CONTENT_TYPE), request.content())
+            : new Key(method, path, null, null);
+        Segment segment = segments[(key.hash ^ (key.hash >>> 16)) & (SEGMENTS - 1)];
+        CharSequence ifNoneMatch = headers.get(HttpHeaderNames.IF_NONE_MATCH);
+        boolean safe = HttpMethod.GET.asciiName().contentEquals(method) || HttpMethod.HEAD.asciiName().contentEquals(method);
+
+        Response cached = segment.serve(key, System.nanoTime(), ifNoneMatch, safe);
+        if (cached != null) {
+            Metrics.instance().cacheHit();
+            return cached;
+        }
+        Metrics.instance().cacheMiss();
+
+        Response response = handler.handle(request);
+        ByteBuf content = response.content();
+        if (!HttpResponseStatus.OK.codeAsText().contentEquals(response.headers().status())
+            || content.readableBytes() + key.size() + ENTRY_OVERHEAD > maxEntryBytes) {
+            return response;
+        }
+        Entry entry = new Entry(key.copy(), response.headers(), content, System.nanoTime() + ttlNanos);
+        content.release();
+        // 이번 응답도 저장한 바디로 내보냄 (put 이후에는 다른 스레드가 축출할 수 있으므로 먼저 retain).
+        // 핸들러를 이미 실행했으므로 GET/HEAD 가 아니면 조건을 보지 않음
+        Response fresh = entry.serve(safe ? ifNoneMatch : null, true);
+        segment.put(entry);
+        return fresh;
+    }
+
+    /** If-None-Match 값(쉼표로 나뉜 목록 또는 *)에 etag 가 있는지 (약한 비교) */
+    static boolean matches(CharSequence ifNoneMatch, AsciiString etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.toString().split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || etag.contentEquals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Key {
+        final CharSequence method;
+        final CharSequence path;
+        // 바디를 키에 넣을 때의 요청 content-type (없으면 null)
+        final CharSequence contentType;
+        // null 이면 바디는 키에 포함하지 않음
+        final ByteBuf body;
+        final int hash;
+
+        Key(CharSequence method, CharSequence path, CharSequence contentType, ByteBuf body) {
+            this.method = method;
+            this.path = path;
+            this.contentType = contentType;
+            this.body = body;
+            int h = AsciiString.hashCode(method) * 31 + AsciiString.hashCode(path);
+            h = contentType == null ? h : h * 31 + AsciiString.hashCode(contentType);
+            this.hash = body == null ? h : h * 31 + ByteBufUtil.hashCode(body);
+        }
+
+        /** 요청이 끝나도 남는 키 (바디는 힙에 복사, 헤더 값은 디코더가 요청마다 새로 만들므로 그대로 씀) */
+        Key copy() {
+            return new Key(method, path, contentType, body == null ? null : Unpooled.wrappedBuffer(ByteBufUtil.getBytes(body)));
+        }
+
+        int size() {
+            return path.length() + (contentType == null ? 0 : contentType.length()) + (body == null ? 0 : body.readableBytes());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                && AsciiString.contentEquals(method, other.method)
+                && AsciiString.contentEquals(path, other.path)
+                && (contentType == null ? other.contentType == null
+                    : other.contentType != null && AsciiString.contentEquals(contentType, other.contentType))
+                && (body == null ? other.body == null : other.body != null && ByteBufUtil.equals(body, other.body));
+        }
+    }
+
+    private static final class Entry {
+        final Key key;
+        final Http2Headers headers;
+        final Http2Headers notModified;
+        final AsciiString etag;
+        final ByteBuf content;
+        final long expiresAtNanos;
+        final long size;
+
+        Entry(Key key, Http2Headers original, ByteBuf body, long expiresAtNanos) {
+            this.key = key;
+            this.expiresAtNanos = expiresAtNanos;
+            int length = body.readableBytes();
+            this.content = Unpooled.directBuffer(length, length).writeBytes(body, body.readerIndex(), length);
+            this.etag = etag(content);
+            this.headers = new DefaultHttp2Headers().set(original).set(HttpHeaderNames.ETAG, etag);
+            this.notModified = new DefaultHttp2Headers()
+                .status(HttpResponseStatus.NOT_MODIFIED.codeAsText())
+                .set(HttpHeaderNames.ETAG, etag);
+            this.size = key.size() + length + ENTRY_OVERHEAD;
+        }
+
+        /**
+         * @param safe GET/HEAD 요청인지. If-None-Match 가 맞으면 GET/HEAD 는 304, 그 외는 412
+         */
+        Response serve(CharSequence ifNoneMatch, boolean safe) {
+            if (matches(ifNoneMatch, etag)) {
+                return safe ? new Response(notModified, Unpooled.EMPTY_BUFFER)
+                    : Response.status(HttpResponseStatus.PRECONDITION_FAILED);
+            }
+            return new Response(headers, content.retainedDuplicate());
+        }
+
+        /** 바디의 SHA-256 앞 128비트 (같은 길이의 다른 바디가 같은 ETag 로 304 를 받지 않도록 해시 대신 digest) */
+        private static AsciiString etag(ByteBuf content) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e); // 모든 JDK 에 있음
+            }
+            digest.update(content.nioBuffer());
+            return AsciiString.of("\"" + ByteBufUtil.hexDump(digest.digest(), 0, 16) + "\"");
+        }
+    }
+
+    private static final class Segment {
+        private final long capacity;
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+        private long bytes;
+
+        Segment(long capacity) {
+            this.capacity = capacity;
+        }
+
+        /** 적중하면 응답 (바디 retain 은 축출과 겹치지 않도록 락 안에서) */
+        synchronized Response serve(Key key, long now, CharSequence ifNoneMatch, boolean safe) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.expiresAtNanos >= 0) {
+                remove(entry);
+                return null;
+            }
+            return entry.serve(ifNoneMatch, safe);
+        }
+
+        synchronized void put(Entry entry) {
+            Entry old = entries.put(entry.key, entry);
+            if (old != null) {
+                bytes -= old.size;
+                old.content.release();
+            }
+            bytes += entry.size;
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while (bytes > capacity && it.hasNext()) {
+                Entry eldest = it.next().getValue();
+                it.remove();
+                bytes -= eldest.size;
+                eldest.content.release();
+            }
+        }
+
+        private void remove(Entry entry) {
+            entries.remove(entry.key);
+            bytes -= entry.size;
+            entry.content.release();
+        }
+    }
+}
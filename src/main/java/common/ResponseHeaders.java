@@ -0,0 +1,57 @@
+package common;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.ReadOnlyHttp2Headers;
+import io.netty.util.AsciiString;
+
+/**
+ * 자주 쓰는 응답 헤더 템플릿. 생성 시 한 번 검증한 {@link ReadOnlyHttp2Headers} 라 요청마다 헤더 객체를 만들지 않고 공유합니다.
+ * 읽기 전용이므로 헤더를 더 붙여야 하는 쪽은 {@code new DefaultHttp2Headers().set(template)} 로 복사해서 씁니다.
+ */
+public final class ResponseHeaders {
+
+    public static final AsciiString TEXT_PLAIN = HttpHeaderValues.TEXT_PLAIN;
+    public static final AsciiString PROMETHEUS_TEXT = AsciiString.cached("text/plain; version=0.0.4; charset=utf-8");
+
+    // 상태 코드만 있는 헤더 (100~599), 처음 쓸 때 만듦. 불변 객체라 경합해서 두 번 만들어져도 무방
+    private static final Http2Headers[] STATUS_ONLY = new Http2Headers[500];
+
+    public static final Http2Headers OK = status(HttpResponseStatus.OK);
+    public static final Http2Headers OK_TEXT_PLAIN = of(HttpResponseStatus.OK, HttpHeaderNames.CONTENT_TYPE, TEXT_PLAIN);
+
+    private ResponseHeaders() {
+    }
+
+    /** :status 만 있는 헤더 */
+    public static Http2Headers status(HttpResponseStatus status) {
+        int i = status.code() - 100;
+        if (i < 0 || i >= STATUS_ONLY.length) {
+            return ReadOnlyHttp2Headers.serverHeaders(true, status.codeAsText());
+        }
+        Http2Headers headers = STATUS_ONLY[i];
+        if (headers == null) {
+            headers = ReadOnlyHttp2Headers.serverHeaders(true, status.codeAsText());
+            STATUS_ONLY[i] = headers;
+        }
+        return headers;
+    }
+
+    /**
+     * 시작 시 한 번 만들어 둘 템플릿
+     *
+     * @param nameValuePairs 이름, 값, 이름, 값, ... (이름은 소문자)
+     */
+    public static Http2Headers of(HttpResponseStatus status, CharSequence... nameValuePairs) {
+        if ((nameValuePairs.length & 1) != 0) {
+            throw new IllegalArgumentException("nameValuePairs must have an even length");
+        }
+        AsciiString[] pairs = new AsciiString[nameValuePairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = AsciiString.of(nameValuePairs[i]);
+        }
+        return ReadOnlyHttp2Headers.serverHeaders(true, status.codeAsText(), pairs);
+    }
+}
@@ -0,0 +1,321 @@
+package common;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.AsciiString;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * method + path 패턴으로 {@link RequestHandler} 를 고르는 라우터.
+ *
+ * <pre>
+ * /users/list      리터럴
+ * /users/{id}      세그먼트 하나를 id 파라미터로 캡처 ({@link Request#param(String)})
+ * /static/*        /static 과 그 아래 모든 경로 (가장 긴 prefix 우선)
+ * </pre>
+ *
+ * 등록된 패턴은 {@link Builder#build()} 시점에 세그먼트 단위 trie 로 컴파일되고,
+ * 각 노드의 자식은 정렬된 배열이라 매칭은 세그먼트마다 이진 탐색 한 번입니다.
+ * 경로는 {@link Http2Headers#path()} 의 {@link AsciiString} 을 그대로 비교하므로 String 을 만들지 않으며,
+ * 파라미터가 있을 때만 캡처 값(복사 없는 subSequence)을 할당합니다.
+ * 우선순위는 리터럴 &gt; 파라미터 &gt; prefix 이고, 경로가 맞지 않으면 fallback, 경로는 맞는데 method 가 없으면 405 입니다.
+ */
+public final class Router implements RequestHandler {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final AsciiString[] NO_KEYS = new AsciiString[0];
+
+    private final Node root;
+    private final RequestHandler fallback;
+    private final int maxParams;
+
+    private Router(Node root, RequestHandler fallback, int maxParams) {
+        this.root = root;
+        this.fallback = fallback;
+        this.maxParams = maxParams;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public Response handle(Request request) throws Exception {
+        Http2Headers headers = request.headers();
+        CharSequence method = headers.method();
+        CharSequence path = headers.path();
+        if (method == null || path == null || path.length() == 0 || path.charAt(0) != '/') {
+            return fallback.handle(request);
+        }
+        int end = indexOf(path, '?', 0, path.length());
+        CharSequence[] values = maxParams == 0 ? null : new CharSequence[maxParams];
+        Endpoint endpoint = find(root, path, 1, end, values, 0);
+        if (endpoint == null) {
+            return fallback.handle(request);
+        }
+        int i = endpoint.indexOf(method);
+        if (i < 0) {
+            return new Response(endpoint.methodNotAllowed, Unpooled.EMPTY_BUFFER);
+        }
+        String[] names = endpoint.paramNames[i];
+        if (names.length > 0) {
+            Map<String, CharSequence> params = new HashMap<>(names.length * 2);
+            for (int p = 0; p < names.length; p++) {
+                params.put(names[p], values[p]);
+            }
+            request = request.withParams(params);
+        }
+        return endpoint.handlers[i].handle(request);
+    }
+
+    /**
+     * path[start, end) 를 node 아래에서 찾음. 리터럴 자식이 막히면 파라미터 자식으로 되돌아가 다시 시도하고,
+     * 둘 다 실패하면 이 노드의 prefix 라우트를 반환.
+     */
+    private static Endpoint find(Node node, CharSequence path, int start, int end, CharSequence[] values, int depth) {
+        if (start >= end) {
+            return node.exact != null ? node.exact : node.prefix;
+        }
+        int segEnd = indexOf(path, '/', start, end);
+        int next = Math.min(segEnd + 1, end);
+        Node child = node.child(path, start, segEnd);
+        if (child != null) {
+            Endpoint endpoint = find(child, path, next, end, values, depth);
+            if (endpoint != null) {
+                return endpoint;
+            }
+        }
+        if (node.param != null && segEnd > start) {
+            values[depth] = path instanceof AsciiString
+                ? ((AsciiString) path).subSequence(start, segEnd, false) : path.subSequence(start, segEnd);
+            Endpoint endpoint = find(node.param, path, next, end, values, depth + 1);
+            if (endpoint != null) {
+                return endpoint;
+            }
+        }
+        return node.prefix;
+    }
+
+    private static int indexOf(CharSequence s, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /** key 와 s[start, end) 를 문자 단위로 비교 (정렬 순서와 같은 기준) */
+    private static int compare(AsciiString key, CharSequence s, int start, int end) {
+        int len = end - start;
+        int n = Math.min(key.length(), len);
+        for (int i = 0; i < n; i++) {
+            int d = key.charAt(i) - s.charAt(start + i);
+            if (d != 0) {
+                return d;
+            }
+        }
+        return key.length() - len;
+    }
+
+    /** 컴파일된 trie 노드 */
+    private static final class Node {
+        AsciiString[] keys = NO_KEYS;      // 정렬됨
+        Node[] children = NO_CHILDREN;     // keys 와 같은 순서
+        Node param;
+        Endpoint exact;
+        Endpoint prefix;
+
+        Node child(CharSequence path, int start, int end) {
+            int lo = 0;
+            int hi = keys.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = compare(keys[mid], path, start, end);
+                if (c < 0) {
+                    lo = mid + 1;
+                } else if (c > 0) {
+                    hi = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+    }
+
+    /** 한 패턴에 등록된 method 별 핸들러 */
+    private static final class Endpoint {
+        final AsciiString[] methods;
+        final RequestHandler[] handlers;
+        final String[][] paramNames;
+        // 405 응답 헤더 (allow 포함), 빌드 시 한 번 만듦
+        final Http2Headers methodNotAllowed;
+
+        Endpoint(Map<AsciiString, Route> routes) {
+            int n = routes.size();
+            methods = new AsciiString[n];
+            handlers = new RequestHandler[n];
+            paramNames = new String[n][];
+            int i = 0;
+            for (Route route : routes.values()) {
+                methods[i] = route.method;
+                handlers[i] = route.handler;
+                paramNames[i] = route.paramNames;
+                i++;
+            }
+            String allow = String.join(", ", Arrays.stream(methods).map(AsciiString::toString).toArray(String[]::new));
+            methodNotAllowed = ResponseHeaders.of(HttpResponseStatus.METHOD_NOT_ALLOWED, HttpHeaderNames.ALLOW, allow);
+        }
+
+        int indexOf(CharSequence method) {
+            for (int i = 0; i < methods.length; i++) {
+                if (methods[i].contentEquals(method)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class Route {
+        final AsciiString method;
+        final String[] paramNames;
+        final RequestHandler handler;
+
+        Route(AsciiString method, String[] paramNames, RequestHandler handler) {
+            this.method = method;
+            this.paramNames = paramNames;
+            this.handler = handler;
+        }
+    }
+
+    public static final class Builder {
+        private final BuildNode root = new BuildNode();
+        private RequestHandler fallback = request -> Response.status(HttpResponseStatus.NOT_FOUND);
+
+        private Builder() {
+        }
+
+        public Builder get(String pattern, RequestHandler handler) {
+            return route(HttpMethod.GET, pattern, handler);
+        }
+
+        public Builder post(String pattern, RequestHandler handler) {
+            return route(HttpMethod.POST, pattern, handler);
+        }
+
+        public Builder put(String pattern, RequestHandler handler) {
+            return route(HttpMethod.PUT, pattern, handler);
+        }
+
+        public Builder delete(String pattern, RequestHandler handler) {
+            return route(HttpMethod.DELETE, pattern, handler);
+        }
+
+        public Builder route(HttpMethod method, String pattern, RequestHandler handler) {
+            if (!pattern.startsWith("/")) {
+                throw new IllegalArgumentException("pattern must start with '/': " + pattern);
+            }
+            BuildNode node = root;
+            boolean prefix = false;
+            List<String> params = new ArrayList<>();
+            String[] segments = pattern.substring(1).split("/", -1);
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (segment.isEmpty()) {
+                    if (i == segments.length - 1) {
+                        break; // 끝의 '/' 는 무시
+                    }
+                    throw new IllegalArgumentException("empty segment in pattern: " + pattern);
+                }
+                if (segment.equals("*")) {
+                    if (i != segments.length - 1) {
+                        throw new IllegalArgumentException("'*' must be the last segment: " + pattern);
+                    }
+                    prefix = true;
+                } else if (segment.startsWith("{") && segment.endsWith("}")) {
+                    params.add(segment.substring(1, segment.length() - 1));
+                    if (node.param == null) {
+                        node.param = new BuildNode();
+                    }
+                    node = node.param;
+                } else {
+                    node = node.children.computeIfAbsent(new AsciiString(segment), k -> new BuildNode());
+                }
+            }
+            Map<AsciiString, Route> routes = prefix ? node.prefix : node.exact;
+            AsciiString name = method.asciiName();
+            if (routes.containsKey(name)) {
+                throw new IllegalArgumentException("duplicate route: " + method + " " + pattern);
+            }
+            routes.put(name, new Route(name, params.toArray(new String[0]), handler));
+            return this;
+        }
+
+        /** 어떤 패턴에도 맞지 않을 때 호출 (기본: 404) */
+        public Builder fallback(RequestHandler fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        public Router build() {
+            return new Router(root.compile(), fallback, root.maxDepth());
+        }
+    }
+
+    /** 등록 중에만 쓰는 가변 노드 */
+    private static final class BuildNode {
+        // 자식은 compare() 와 같은 순서(문자 코드 순)로 정렬되어야 이진 탐색이 맞음
+        final TreeMap<AsciiString, BuildNode> children = new TreeMap<>(KeyOrder.INSTANCE);
+        final Map<AsciiString, Route> exact = new LinkedHashMap<>();
+        final Map<AsciiString, Route> prefix = new LinkedHashMap<>();
+        BuildNode param;
+
+        Node compile() {
+            Node node = new Node();
+            if (!children.isEmpty()) {
+                node.keys = children.keySet().toArray(NO_KEYS);
+                node.children = new Node[node.keys.length];
+                for (int i = 0; i < node.keys.length; i++) {
+                    node.children[i] = children.get(node.keys[i]).compile();
+                }
+            }
+            if (param != null) {
+                node.param = param.compile();
+            }
+            node.exact = exact.isEmpty() ? null : new Endpoint(exact);
+            node.prefix = prefix.isEmpty() ? null : new Endpoint(prefix);
+            return node;
+        }
+
+        /** 경로 하나에 나올 수 있는 최대 파라미터 수 */
+        int maxDepth() {
+            int max = param == null ? 0 : 1 + param.maxDepth();
+            for (BuildNode child : children.values()) {
+                max = Math.max(max, child.maxDepth());
+            }
+            return max;
+        }
+    }
+
+    private enum KeyOrder implements Comparator<AsciiString> {
+        INSTANCE;
+
+        @Override
+        public int compare(AsciiString a, AsciiString b) {
+            return Router.compare(a, b, 0, b.length());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 요청 바디를 모으지 않고 도착하는 대로 조각 단위로 받는 처리 로직 (server2).
+ *
+ * 요청(스트림)마다 {@link #begin(Request)} 가 한 번 호출되고, 반환한 {@link BodyHandler} 가 바디 조각과 끝을 받습니다.
+ * 모든 콜백은 스트림 채널의 이벤트 루프에서 호출되므로 오래 걸리는 일은 반환하는 future 뒤로 넘겨야 합니다.
+ * 바디 전체가 필요한 {@link RequestHandler} 는 {@link BodyAggregator} 로 감싸서 씁니다.
+ */
+@FunctionalInterface
+public interface StreamingRequestHandler {
+
+    /**
+     * 요청 HEADERS 를 받으면 호출됨. 예외를 던지면 바디를 읽지 않고 {@link Response#error(Throwable)} 로 응답함
+     *
+     * @param request 헤더만 있는 요청 (content 는 비어 있음)
+     */
+    BodyHandler begin(Request request) throws Exception;
+
+    /** 요청 하나의 바디 처리. 한 스트림에서만 쓰이므로 동기화하지 않아도 됨 */
+    interface BodyHandler {
+
+        /**
+         * 바디 조각 하나. chunk 는 호출이 끝나면 호출자가 해제하므로 더 쓰려면 retain 해야 합니다.
+         *
+         * @return 다음 조각을 받을 준비가 되면 완료되는 future, null 이면 바로 다음 조각을 읽음.
+         *         완료되기 전에는 스트림을 더 읽지 않으므로 상대에게 흐름제어 윈도우도 돌려주지 않음 (backpressure).
+         *         실패로 완료되면 {@link Response#error(Throwable)} 로 응답하고 남은 바디는 버림
+         */
+        CompletionStage<?> onData(ByteBuf chunk) throws Exception;
+
+        /** END_STREAM 수신. 응답 바디의 소유권은 호출자에게 넘어감 */
+        CompletionStage<Response> onEnd() throws Exception;
+
+        /** END_STREAM 전에 스트림이 닫히거나 처리가 실패함. 쥐고 있던 자원을 정리 */
+        default void onAbort(Throwable cause) {
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package common;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.UnixChannelOption;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.Locale;
+
+/**
+ * 서버/클라이언트 부트스트랩이 사용할 네이티브 전송 계층 선택.
+ *
+ * <p>기본값(auto)은 io_uring → epoll → NIO 순으로 사용 가능한 것을 고릅니다.
+ * io_uring 은 netty-incubator-transport-native-io_uring 이 클래스패스에 있을 때만 쓰이므로
+ * 컴파일 의존성 없이 리플렉션으로 로드합니다.
+ *
+ * <pre>
+ * -Dhttp2.transport=auto|io_uring|epoll|nio
+ * -Dhttp2.tcpNoDelay=true
+ * -Dhttp2.reusePort=false       (서버 소켓 SO_REUSEPORT, 네이티브 전송만)
+ * -Dhttp2.tcpFastOpen=0         (0 이면 끔. 서버는 TFO 큐 길이, 클라이언트는 TCP_FASTOPEN_CONNECT)
+ * -Dhttp2.edgeTriggered=true    (epoll 전용, false 면 level-triggered)
+ * </pre>
+ */
+public enum Transport {
+    IO_URING,
+    EPOLL,
+    NIO;
+
+    private static final String IO_URING_PACKAGE = "io.netty.incubator.channel.uring.";
+
+    private static final boolean TCP_NODELAY = SystemPropertyUtil.getBoolean("http2.tcpNoDelay", true);
+    private static final boolean REUSE_PORT = SystemPropertyUtil.getBoolean("http2.reusePort", false);
+    private static final int TCP_FASTOPEN = SystemPropertyUtil.getInt("http2.tcpFastOpen", 0);
+    private static final boolean EDGE_TRIGGERED = SystemPropertyUtil.getBoolean("http2.edgeTriggered", true);
+
+    private static final Transport CURRENT = select(SystemPropertyUtil.get("http2.transport", "auto"));
+
+    /** 시스템 프로퍼티로 결정된 전송 계층 (프로세스 당 한 번 결정) */
+    public static Transport current() {
+        return CURRENT;
+    }
+
+    static Transport select(String name) {
+        String value = name.trim().toLowerCase(Locale.ROOT);
+        if ("auto".equals(value)) {
+            for (Transport t : values()) {
+                if (t.isAvailable()) {
+                    return t;
+                }
+            }
+            return NIO;
+        }
+        Transport requested;
+        try {
+            requested = valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            // 클래스 초기화 중이므로 던지면 이후 Transport 접근이 모두 NoClassDefFoundError 가 됨
+            System.err.println("[WARN] unknown transport " + value + " (auto, io_uring, epoll, nio), falling back to NIO");
+            return NIO;
+        }
+        if (!requested.isAvailable()) {
+            System.err.println("[WARN] transport " + value + " is not available, falling back to NIO");
+            return NIO;
+        }
+        return requested;
+    }
+
+    public boolean isAvailable() {
+        switch (this) {
+            case IO_URING:
+                try {
+                    return (Boolean) Class.forName(IO_URING_PACKAGE + "IOUring")
+                        .getMethod("isAvailable").invoke(null);
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    return false;
+                }
+            case EPOLL:
+                return Epoll.isAvailable();
+            default:
+                return true;
+        }
+    }
+
+    /** 네이티브 전송은 SO_REUSEPORT 로 같은 포트에 여러 리스닝 소켓을 바인드할 수 있습니다. */
+    public boolean supportsReusePort() {
+        return this != NIO;
+    }
+
+    public EventLoopGroup newEventLoopGroup(int nThreads) {
+        switch (this) {
+            case IO_URING:
+                return newInstance("IOUringEventLoopGroup", nThreads);
+            case EPOLL:
+                return new EpollEventLoopGroup(nThreads);
+            default:
+                return new NioEventLoopGroup(nThreads);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public Class<? extends ServerSocketChannel> serverChannelClass() {
+        switch (this) {
+            case IO_URING:
+                return (Class<? extends ServerSocketChannel>) loadClass("IOUringServerSocketChannel");
+            case EPOLL:
+                return EpollServerSocketChannel.class;
+            default:
+                return NioServerSocketChannel.class;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public Class<? extends SocketChannel> channelClass() {
+        switch (this) {
+            case IO_URING:
+                return (Class<? extends SocketChannel>) loadClass("IOUringSocketChannel");
+            case EPOLL:
+                return EpollSocketChannel.class;
+            default:
+                return NioSocketChannel.class;
+        }
+    }
+
+    /** 서버 채널 타입과 리스닝/자식 소켓 옵션을 설정합니다. */
+    public ServerBootstrap configure(ServerBootstrap b) {
+        b.channel(serverChannelClass())
+            .childOption(ChannelOption.TCP_NODELAY, TCP_NODELAY);
+        if (REUSE_PORT && supportsReusePort()) {
+            b.option(UnixChannelOption.SO_REUSEPORT, true);
+        }
+        if (TCP_FASTOPEN > 0 && this != NIO) {
+            b.option(ChannelOption.TCP_FASTOPEN, TCP_FASTOPEN);
+        }
+        if (this == EPOLL) {
+            EpollMode mode = EDGE_TRIGGERED ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+            b.option(EpollChannelOption.EPOLL_MODE, mode)
+                .childOption(EpollChannelOption.EPOLL_MODE, mode);
+        }
+        return b;
+    }
+
+    /** 클라이언트 채널 타입과 소켓 옵션을 설정합니다. */
+    public Bootstrap configure(Bootstrap b) {
+        b.channel(channelClass())
+            .option(ChannelOption.TCP_NODELAY, TCP_NODELAY);
+        if (TCP_FASTOPEN > 0 && this != NIO) {
+            b.option(ChannelOption.TCP_FASTOPEN_CONNECT, true);
+        }
+        if (this == EPOLL) {
+            b.option(EpollChannelOption.EPOLL_MODE,
+                EDGE_TRIGGERED ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED);
+        }
+        return b;
+    }
+
+    private static Class<?> loadClass(String simpleName) {
+        try {
+            return Class.forName(IO_URING_PACKAGE + simpleName);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("io_uring transport is not on the classpath", e);
+        }
+    }
+
+    private static EventLoopGroup newInstance(String simpleName, int nThreads) {
+        try {
+            return (EventLoopGroup) loadClass(simpleName).getConstructor(int.class).newInstance(nThreads);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot create " + simpleName, e);
+        }
+    }
+}
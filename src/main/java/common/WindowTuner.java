@@ -0,0 +1,90 @@
+package common;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http2.Http2Exception;
+
+/**
+ * 수신 윈도우 자동 조정 (BDP 추정).
+ *
+ * DATA 를 받기 시작하면 PING 을 하나 보내고, ACK 가 올 때까지(= RTT 한 번) 받은 바이트를 셉니다.
+ * 그 양이 현재 윈도우의 2/3 이상이고 측정된 대역폭이 최고치를 갱신했다면 윈도우가 전송을 막고 있다고 보고
+ * 윈도우를 받은 양의 2배(상한 {@link Http2Config#maxWindowSize()})로 키웁니다.
+ * 커넥션 윈도우는 WINDOW_UPDATE 로, 스트림 윈도우는 SETTINGS_INITIAL_WINDOW_SIZE 로 올립니다.
+ *
+ * 한 커넥션의 이벤트 루프에서만 호출되므로 동기화하지 않습니다.
+ */
+public abstract class WindowTuner {
+
+    /** 측정용 PING payload ("bdp-ping"), 다른 용도의 PING ACK 와 구분 */
+    public static final long PING_CONTENT = 0x6264702d70696e67L;
+
+    private static final double SATURATION = 2.0 / 3;
+
+    private final int maxWindow;
+    private int window;
+    private long sample;
+    private long pingSentNanos;     // 0 이면 측정 중이 아님
+    private long rttNanos;          // 평활화된 RTT
+    private double maxBandwidth;    // bytes/s
+
+    protected WindowTuner(int initialWindow, int maxWindow) {
+        this.window = initialWindow;
+        this.maxWindow = maxWindow;
+    }
+
+    /** 받은 DATA 프레임 (패딩 포함 흐름제어 바이트) */
+    public final void onDataRead(ChannelHandlerContext ctx, int bytes) throws Http2Exception {
+        if (window >= maxWindow) {
+            return;
+        }
+        if (pingSentNanos == 0) {
+            sample = 0;
+            pingSentNanos = System.nanoTime();
+            writePing(ctx, PING_CONTENT);
+        }
+        sample += bytes;
+    }
+
+    /**
+     * @return 측정용 PING 의 ACK 였으면 true (호출자는 더 전달하지 않아도 됨)
+     */
+    public final boolean onPingAckRead(ChannelHandlerContext ctx, long content) throws Http2Exception {
+        if (content != PING_CONTENT || pingSentNanos == 0) {
+            return false;
+        }
+        long rtt = Math.max(1, System.nanoTime() - pingSentNanos);
+        pingSentNanos = 0;
+        rttNanos = rttNanos == 0 ? rtt : (rttNanos * 7 + rtt) / 8;
+
+        double bandwidth = sample * 1e9 / rttNanos;
+        if (bandwidth > maxBandwidth) {
+            maxBandwidth = bandwidth;
+            if (sample >= window * SATURATION) {
+                int next = (int) Math.min(maxWindow, sample * 2);
+                if (next > window) {
+                    int increment = next - window;
+                    window = next;
+                    updateWindow(ctx, increment, next);
+                }
+            }
+        }
+        return true;
+    }
+
+    public int window() {
+        return window;
+    }
+
+    public long rttNanos() {
+        return rttNanos;
+    }
+
+    protected abstract void writePing(ChannelHandlerContext ctx, long content) throws Http2Exception;
+
+    /**
+     * @param connectionIncrement 커넥션 윈도우 증가량
+     * @param streamWindow        새 스트림 초기 윈도우
+     */
+    protected abstract void updateWindow(ChannelHandlerContext ctx, int connectionIncrement, int streamWindow)
+        throws Http2Exception;
+}
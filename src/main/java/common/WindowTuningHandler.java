@@ -0,0 +1,56 @@
+package common;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http2.DefaultHttp2PingFrame;
+import io.netty.handler.codec.http2.DefaultHttp2SettingsFrame;
+import io.netty.handler.codec.http2.DefaultHttp2WindowUpdateFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2PingFrame;
+import io.netty.handler.codec.http2.Http2Settings;
+
+/**
+ * Http2FrameCodec 을 쓰는 파이프라인(server2, client2, client3)용 {@link WindowTuner}.
+ * 커넥션 파이프라인에서 Http2FrameCodec 바로 뒤(Http2MultiplexHandler 앞)에 둡니다.
+ */
+public class WindowTuningHandler extends ChannelInboundHandlerAdapter {
+
+    private final WindowTuner tuner;
+
+    public WindowTuningHandler(int initialWindow, int maxWindow) {
+        tuner = new WindowTuner(initialWindow, maxWindow) {
+            @Override
+            protected void writePing(ChannelHandlerContext ctx, long content) {
+                ctx.writeAndFlush(new DefaultHttp2PingFrame(content));
+            }
+
+            @Override
+            protected void updateWindow(ChannelHandlerContext ctx, int connectionIncrement, int streamWindow) {
+                // stream 없는 WINDOW_UPDATE 는 코덱이 커넥션 윈도우 증가로 처리
+                ctx.write(new DefaultHttp2WindowUpdateFrame(connectionIncrement));
+                ctx.writeAndFlush(new DefaultHttp2SettingsFrame(new Http2Settings().initialWindowSize(streamWindow)));
+            }
+        };
+    }
+
+    /** {@link Http2Config} 설정대로 만들고, 자동 조정을 끈 경우 null */
+    public static WindowTuningHandler fromConfig(Http2Settings settings) {
+        if (!Http2Config.autoTuneWindow()) {
+            return null;
+        }
+        return new WindowTuningHandler(Http2Config.initialWindowSize(settings), Http2Config.maxWindowSize());
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Http2DataFrame) {
+            tuner.onDataRead(ctx, ((Http2DataFrame) msg).initialFlowControlledBytes());
+        } else if (msg instanceof Http2PingFrame) {
+            Http2PingFrame ping = (Http2PingFrame) msg;
+            if (ping.ack() && tuner.onPingAckRead(ctx, ping.content())) {
+                return;
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+}
@@ -0,0 +1,279 @@
+package server;
+
+import common.AccessLog;
+import common.BodyAggregator;
+import common.Compression;
+import common.GracefulShutdown;
+import common.Metrics;
+import common.Request;
+import common.RequestExecutor;
+import common.RequestHandler;
+import common.Response;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpScheme;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+
+/**
+ * h2c 로 업그레이드하지 않는 HTTP/1.1 요청을 HTTP/2 와 같은 {@link RequestHandler} 로 처리하는 핸들러.
+ * Http2CleartextServer 파이프라인에서 CleartextHttp2ServerUpgradeHandler 뒤에 두며, 업그레이드 요청이 아닌 요청이
+ * 여기까지 오지 않으면 클라이언트는 응답 없이 타임아웃까지 기다리게 됩니다.
+ *
+ * <ul>
+ *   <li>앞에 HttpContentDecompressor 와 HttpObjectAggregator 를 붙여 요청을 모음.
+ *       바디 상한은 HTTP/2 와 같은 -Dhttp2.maxContentLength 이며 넘으면 aggregator 가 413 으로 응답</li>
+ *   <li>요청 헤더는 HTTP/2 형식(:method, :path ...)으로 바꿔 넘기고, 응답은 HTTP/1.1 응답으로 바꿔 content-length 를 붙임.
+ *       응답 압축은 HTTP/2 와 같은 {@link Compression} 정책을 따름</li>
+ *   <li>keep-alive - HTTP/1.1 은 기본, HTTP/1.0 은 keep-alive 헤더가 있을 때만. 아니면 그 응답을 보낸 뒤 닫고 이후 요청은 버림</li>
+ *   <li>파이프라이닝 - 실행기에서 순서와 다르게 끝나도 응답은 요청 순서대로 씀 (RFC 9112 9.3.2).
+ *       응답하지 않은 요청이 maxPipelined 개가 되면 읽기를 멈춤 (모으는 바디도 maxPipelined x maxContentLength 로 제한됨)</li>
+ *   <li>drain - 받은 요청의 응답을 마저 보내고 마지막 응답에 connection: close 를 붙여 닫음 ({@link GracefulShutdown.Drainable})</li>
+ * </ul>
+ *
+ * h2c 업그레이드(또는 prior knowledge)로 HTTP/2 가 되면 앞에 붙인 핸들러와 함께 파이프라인에서 빠집니다.
+ * 액세스 로그의 stream 자리에는 커넥션 안에서의 요청 순번을 씁니다.
+ *
+ * <pre>
+ * -Dhttp2.http1.maxPipelined=16    커넥션별로 응답하지 않은 요청 상한
+ * </pre>
+ */
+public final class Http1ServerHandler extends ChannelInboundHandlerAdapter implements GracefulShutdown.Drainable {
+
+    private final RequestHandler handler;
+    private final RequestExecutor executor;
+    private final Compression compression;
+    private final int maxContentLength;
+    private final int maxPipelined;
+
+    // 받은 순서대로의 요청, 앞에서부터 응답이 준비된 것만 씀 (이벤트 루프에서만 접근)
+    private final ArrayDeque<Exchange> pending = new ArrayDeque<>();
+    private HttpContentDecompressor decompressor;
+    private HttpObjectAggregator aggregator;
+    private int sequence;
+    // keep-alive 가 아닌 요청을 받았거나 drain 중이면 이후 요청은 버림
+    private boolean closing;
+
+    public Http1ServerHandler(RequestHandler handler, RequestExecutor executor, Compression compression) {
+        this(handler, executor, compression, BodyAggregator.maxContentLengthFromConfig(),
+            SystemPropertyUtil.getInt("http2.http1.maxPipelined", 16));
+    }
+
+    public Http1ServerHandler(RequestHandler handler, RequestExecutor executor, Compression compression,
+        int maxContentLength, int maxPipelined) {
+        this.handler = handler;
+        this.executor = executor;
+        this.compression = compression;
+        this.maxContentLength = maxContentLength;
+        this.maxPipelined = Math.max(1, maxPipelined);
+    }
+
+    /** 요청 하나와 (준비되면) 그 응답 */
+    private static final class Exchange {
+        final int sequence;
+        final Http2Headers headers;
+        final HttpVersion version;
+        final int requestBytes;
+        final long startNanos;
+        boolean keepAlive;
+        Response response;
+
+        Exchange(int sequence, Http2Headers headers, HttpVersion version, int requestBytes, boolean keepAlive,
+            long startNanos) {
+            this.sequence = sequence;
+            this.headers = headers;
+            this.version = version;
+            this.requestBytes = requestBytes;
+            this.keepAlive = keepAlive;
+            this.startNanos = startNanos;
+        }
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        decompressor = new HttpContentDecompressor();
+        aggregator = new HttpObjectAggregator(maxContentLength);
+        ctx.pipeline().addBefore(ctx.name(), null, decompressor);
+        ctx.pipeline().addBefore(ctx.name(), null, aggregator);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (!(msg instanceof FullHttpRequest)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        FullHttpRequest request = (FullHttpRequest) msg;
+        if (closing) {
+            request.release();
+            return;
+        }
+        long startNanos = System.nanoTime();
+        Http2Headers headers = request.decoderResult().isSuccess() ? toHttp2Headers(request) : null;
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        Exchange exchange = new Exchange(++sequence,
+            headers != null ? headers : new DefaultHttp2Headers().method(request.method().asciiName()).path(request.uri()),
+            request.protocolVersion(), request.content().readableBytes(), keepAlive, startNanos);
+        pending.add(exchange);
+        if (!keepAlive) {
+            closing = true;
+        }
+        if (pending.size() >= maxPipelined) {
+            ctx.channel().config().setAutoRead(false);
+        }
+        if (headers == null) {
+            request.release();
+            exchange.keepAlive = false;
+            closing = true;
+            complete(ctx, exchange, Response.status(HttpResponseStatus.BAD_REQUEST), null);
+            return;
+        }
+        // 바디(request 의 content)는 실행기가 핸들러 호출 후 해제
+        executor.execute(ctx.executor(), handler, new Request(headers, request.content(), ctx.alloc()),
+            (response, cause) -> complete(ctx, exchange, response, cause));
+    }
+
+    /** HTTP/2 형식의 요청 헤더 (connection 등 홉 단위 헤더는 빠짐), 잘못된 요청이면 null */
+    private static Http2Headers toHttp2Headers(FullHttpRequest request) {
+        if (!request.headers().contains(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text())) {
+            request.headers().set(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(), HttpScheme.HTTP.name());
+        }
+        try {
+            return HttpConversionUtil.toHttp2Headers(request, false);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void complete(ChannelHandlerContext ctx, Exchange exchange, Response response, Throwable cause) {
+        if (cause != null) {
+            System.err.println("[ERROR] Request failed on " + ctx.channel() + ": " + cause);
+            response = Response.error(cause);
+        }
+        if (!ctx.channel().isActive()) {
+            response.content().release();
+            return;
+        }
+        exchange.response = response;
+        boolean wrote = false;
+        Exchange head;
+        while ((head = pending.peek()) != null && head.response != null) {
+            pending.poll();
+            writeResponse(ctx, head);
+            wrote = true;
+            if (!head.keepAlive) {
+                break;
+            }
+        }
+        if (wrote) {
+            ctx.flush();
+        }
+        if (!closing && pending.size() < maxPipelined && !ctx.channel().config().isAutoRead()) {
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    private void writeResponse(ChannelHandlerContext ctx, Exchange exchange) {
+        Response response = exchange.response;
+        ByteBuf content = response.content();
+        Http2Headers responseHeaders = response.headers();
+        CharSequence encoding = compression.responseEncoding(
+            exchange.headers.get(HttpHeaderNames.ACCEPT_ENCODING), responseHeaders, content.readableBytes());
+        EmbeddedChannel encoder = encoding != null ? Compression.newEncoder(encoding) : null;
+        if (encoder != null) {
+            content = encode(ctx, encoder, content);
+            responseHeaders = Compression.withEncoding(responseHeaders, encoding);
+        }
+        int responseBytes = content.readableBytes();
+
+        FullHttpResponse res = new DefaultFullHttpResponse(exchange.version,
+            HttpResponseStatus.parseLine(responseHeaders.status()), content);
+        for (Map.Entry<CharSequence, CharSequence> header : responseHeaders) {
+            if (!Http2Headers.PseudoHeaderName.hasPseudoHeaderFormat(header.getKey())) {
+                res.headers().add(header.getKey(), header.getValue());
+            }
+        }
+        HttpUtil.setContentLength(res, responseBytes);
+        HttpUtil.setKeepAlive(res, exchange.keepAlive);
+        ChannelFuture future = ctx.write(res);
+        if (!exchange.keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+        Metrics.instance().dataSent(responseBytes);
+        Metrics.instance().responseSent(responseHeaders.status(), exchange.startNanos);
+        AccessLog.instance().log(ctx.channel(), exchange.sequence, exchange.headers, responseHeaders,
+            exchange.requestBytes, responseBytes, exchange.startNanos);
+    }
+
+    private static ByteBuf encode(ChannelHandlerContext ctx, EmbeddedChannel encoder, ByteBuf content) {
+        encoder.writeOutbound(content);
+        encoder.finish();
+        CompositeByteBuf out = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+        ByteBuf buf;
+        while ((buf = encoder.readOutbound()) != null) {
+            if (buf.isReadable()) {
+                out.addComponent(true, buf);
+            } else {
+                buf.release();
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public void drain(ChannelHandlerContext ctx) {
+        closing = true;
+        Exchange last = pending.peekLast();
+        if (last == null) {
+            ctx.close();
+        } else {
+            // 마지막 응답에 connection: close 를 붙이고 보낸 뒤 닫음
+            last.keepAlive = false;
+        }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        ctx.fireUserEventTriggered(evt);
+        if (evt instanceof HttpServerUpgradeHandler.UpgradeEvent
+            || evt instanceof CleartextHttp2ServerUpgradeHandler.PriorKnowledgeUpgradeEvent) {
+            // 이후로는 HTTP/2 핸들러가 처리
+            ctx.pipeline().remove(decompressor);
+            ctx.pipeline().remove(aggregator);
+            ctx.pipeline().remove(this);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        for (Exchange exchange : pending) {
+            if (exchange.response != null) {
+                ReferenceCountUtil.release(exchange.response.content());
+            }
+        }
+        pending.clear();
+        super.channelInactive(ctx);
+    }
+}
@@ -1,44 +1,97 @@
 package server;
 
+import common.AccessLog;
+import common.Compression;
+import common.ConnectionLimits;
+import common.FlushCoalescingHandler;
+import common.GracefulShutdown;
+import common.ListenerShards;
+import common.Metrics;
+import common.RequestExecutor;
+import common.RequestHandler;
+import common.Response;
+import common.ResponseCache;
+import common.Router;
+import common.Transport;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpServerUpgradeHandler;
 import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
 import io.netty.handler.codec.http2.Http2CodecUtil;
 import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
 import io.netty.util.AsciiString;
+import io.netty.util.concurrent.Future;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class Http2CleartextServer {
     private final int port;
+    // 스레드 그룹 설정 (boss는 접속 수락, worker는 소켓 I/O 처리)
+    // 전송 계층은 가능하면 epoll/io_uring 을 사용 (common.Transport 참고)
+    private final Transport transport = Transport.current();
+    private final EventLoopGroup bossGroup = transport.newEventLoopGroup(1);
+    private final EventLoopGroup workerGroup = transport.newEventLoopGroup(0);
+    private final GracefulShutdown shutdown = new GracefulShutdown(bossGroup, workerGroup);
+
     public Http2CleartextServer(int port) {
         this.port = port;
     }
 
+    /**
+     * 새 커넥션을 그만 받고 진행 중인 스트림을 timeout 까지 마친 뒤 커넥션을 닫습니다 ({@link GracefulShutdown}).
+     * 모든 커넥션이 닫히면 {@link #start()} 가 이벤트 루프를 정리하고 반환합니다.
+     */
+    public Future<Void> drain(long timeout, TimeUnit unit) {
+        return shutdown.drain(timeout, unit);
+    }
+
+    /** SIGTERM 시 drain 하도록 shutdown hook 등록 */
+    public void installShutdownHook() {
+        shutdown.installShutdownHook();
+    }
+
+    /** 서버를 시작하고 drain(또는 서버 채널 종료)이 끝날 때까지 블로킹합니다. */
     public void start() throws InterruptedException {
-        // 스레드 그룹 설정 (boss는 접속 수락, worker는 소켓 I/O 처리)
-        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        // 요청 처리 실행 모델 (inline / pool / virtual), 모든 커넥션이 공유
+        RequestExecutor executor = RequestExecutor.fromSystemProperties();
+        // 응답 압축 정책 (accept-encoding 협상, 크기/타입 조건)
+        Compression compression = Compression.fromSystemProperties();
+        // 커넥션별 스트림/리셋 속도와 바디 예산, 서버 전체 바디 상한은 모든 커넥션이 나눠 씀
+        ConnectionLimits limits = ConnectionLimits.fromConfig();
+        // 같은 바디가 반복되는 테스트 경로는 대문자 변환 결과를 캐시 (바디까지 키에 포함)
+        ResponseCache cache = ResponseCache.fromSystemProperties();
+        RequestHandler cachedEcho = cache.cached(Http2ServerHandler::echoUpperCase, 60, TimeUnit.SECONDS, true);
+        // 라우팅 테이블은 시작 시 한 번 컴파일해서 모든 커넥션이 공유 (등록되지 않은 경로는 기존 대문자 에코)
+        Router router = Router.builder()
+            .get("/health", request -> Response.status(HttpResponseStatus.OK))
+            .get("/metrics", Metrics.instance())
+            .post("/http2-test", cachedEcho)
+            .post("/test2", cachedEcho)
+            .post("/test3", cachedEcho)
+            .fallback(Http2ServerHandler::echoUpperCase)
+            .build();
         try {
             ServerBootstrap b = new ServerBootstrap();
-            b.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
+            transport.configure(b)
                 .childHandler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel ch) throws Exception {
+                        shutdown.track(ch);
                         ChannelPipeline p = ch.pipeline();
 
                         // 1. HTTP/1.1 서버 코덱 (요청 디코딩/응답 인코딩)
                         HttpServerCodec httpServerCodec = new HttpServerCodec();
 
                         // 2. HTTP/2 핸들러 객체 생성 (아래에서 구현)
-                        Http2ServerHandler http2Handler = new Http2ServerHandler();
+                        Http2ServerHandler http2Handler = new Http2ServerHandler(router, executor, compression, limits);
 
                         // 3. 업그레이드 코덱 팩토리: HTTP/1.1 "Upgrade: h2c" 헤더 처리
                         HttpServerUpgradeHandler.UpgradeCodecFactory upgradeFactory = protocol -> {
@@ -56,26 +109,47 @@ public class Http2CleartextServer {
                             new CleartextHttp2ServerUpgradeHandler(httpServerCodec, upgradeHandler, http2Handler);
 
                         // 5. 파이프라인에 추가: 첫 핸들러로 cleartextH2cHandler 추가
+                        // (-Dhttp2.flush.coalesce=true 면 그 앞에 flush 를 모으는 핸들러, 업그레이드 뒤에도 소켓 쪽에 남음)
+                        FlushCoalescingHandler flushCoalescing = FlushCoalescingHandler.fromConfig();
+                        if (flushCoalescing != null) {
+                            p.addLast(flushCoalescing);
+                        }
                         p.addLast(cleartextH2cHandler);
+                        // 업그레이드하지 않는 HTTP/1.1 요청은 같은 라우터로 처리 (업그레이드되면 파이프라인에서 빠짐)
+                        p.addLast(new Http1ServerHandler(router, executor, compression));
                         // (참고: CleartextHttp2ServerUpgradeHandler는 HTTP/2 프레임 프리페이스(prior knowledge)를 감지하거나
                         // "Upgrade: h2c" 헤더를 통해 HTTP/1.1을 HTTP/2로 업그레이드합니다:contentReference[oaicite:0]{index=0}:contentReference[oaicite:1]{index=1}.
                         // 업그레이드가 완료되면 내부적으로 HTTP/1 코덱은 제거되고 HTTP/2 프레임 핸들러가 동작합니다.)
                     }
                 });
 
-            // 6. 서버 채널 바인드 및 시작
-            Channel ch = b.bind(port).sync().channel();
-            System.out.println("** HTTP/2 Cleartext server started on port " + port + " **");
-            ch.closeFuture().sync();
+            // 6. 서버 채널 바인드 및 시작 (-Dhttp2.shards 면 SO_REUSEPORT 로 여러 개, common.ListenerShards 참고)
+            ListenerShards shards = ListenerShards.fromConfig(transport, workerGroup);
+            List<Channel> listeners = shards != null ? shards.bind(b, port) : Collections.singletonList(b.group(bossGroup, workerGroup).bind(port).sync().channel());
+            System.out.println("** HTTP/2 Cleartext server started on port " + port + " (" + transport
+                + (shards != null ? ", " + shards.size() + " listener shards" : "") + ") **");
+            for (Channel ch : listeners) {
+                shutdown.bound(ch);
+            }
+            for (Channel ch : listeners) {
+                ch.closeFuture().sync();
+            }
+            // drain 으로 서버 채널이 닫힌 경우 남은 커넥션이 모두 닫힐 때까지 기다림 (그 외에는 여기서 drain 시작)
+            shutdown.drain(GracefulShutdown.timeoutMillisFromConfig(), TimeUnit.MILLISECONDS).syncUninterruptibly();
         } finally {
+            // drain 이 끝난 뒤라 더 기록될 요청이 없음
+            AccessLog.instance().close();
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
+            executor.shutdown();
         }
     }
 
     // 메인 메서드: 포트 지정하여 서버 시작
     public static void main(String[] args) throws InterruptedException {
         int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8080;
-        new Http2CleartextServer(port).start();
+        Http2CleartextServer server = new Http2CleartextServer(port);
+        server.installShutdownHook();
+        server.start();
     }
 }
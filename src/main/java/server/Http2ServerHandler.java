@@ -1,35 +1,220 @@
 package server;
 
+import common.AccessLog;
+import common.BodyTransformer;
+import common.Compression;
+import common.ConnectionLimits;
+import common.Http2Config;
+import common.Metrics;
+import common.Request;
+import common.RequestExecutor;
+import common.RequestHandler;
+import common.Response;
+import common.ResponseHeaders;
+import common.WindowTuner;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.http.HttpServerUpgradeHandler;
 import io.netty.handler.codec.http2.*;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.util.CharsetUtil;
 
-import java.util.Map;
+import java.nio.charset.Charset;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public final class Http2ServerHandler extends Http2ConnectionHandler implements Http2FrameListener {
 
-    private final Map<Integer, ByteBuf> dataBufferMap = new ConcurrentHashMap<>();
-    private final Map<Integer, Http2Headers> headersMap = new ConcurrentHashMap<>();
+    // DATA 프레임을 복사하지 않고 모으기 위한 컴포넌트 수 상한 (넘으면 CompositeByteBuf 가 통째로 복사/병합함)
+    private static final int MAX_BODY_COMPONENTS = Integer.MAX_VALUE;
+
+    // 스트림별 요청 상태는 Http2Stream 프로퍼티로 보관 (핸들러는 한 이벤트 루프에서만 호출되므로 동기화/박싱 불필요)
+    private final Http2Connection.PropertyKey requestKey;
+    // 흐름제어 윈도우가 막힌 시각 (막혀 있는 동안만 존재)
+    private final Http2Connection.PropertyKey blockedKey;
+
+    private final RequestHandler handler;
+    private final RequestExecutor executor;
+    private final Compression compression;
+    // 압축 뒤 보내는 DATA 바이트
+    private final DataCountingEncoder dataCounter;
+    // 새 스트림/리셋 속도와 모으는 바디 바이트 예산
+    private final ConnectionLimits.Budget budget;
+    // 수신 윈도우 자동 조정, 끈 경우 null
+    private final WindowTuner windowTuner;
+    // 커넥션 윈도우는 SETTINGS 로 바뀌지 않으므로 초기 스트림 윈도우만큼 WINDOW_UPDATE 로 늘림 (Http2FrameCodec 과 같은 동작)
+    private final int initialWindowSize;
+    private boolean connectionWindowExpanded;
 
     // Default constructor delegates to private one, ensuring super() is first
     public Http2ServerHandler() {
-        this(new DefaultHttp2Connection(true), new DefaultHttp2FrameWriter(), new DefaultHttp2FrameReader());
+        this(Http2ServerHandler::echoUpperCase, RequestExecutor.inline());
+    }
+
+    public Http2ServerHandler(RequestHandler handler, RequestExecutor executor) {
+        this(handler, executor, Compression.fromSystemProperties());
+    }
+
+    /**
+     * 응답 DATA 는 CompressorHttp2ConnectionEncoder 가 content-encoding 헤더대로 압축하므로,
+     * handler 는 이미 압축한 바디에 content-encoding 을 붙여 돌려주면 안 됨 (압축 여부는 compression 정책이 정함)
+     */
+    public Http2ServerHandler(RequestHandler handler, RequestExecutor executor, Compression compression) {
+        this(handler, executor, compression, ConnectionLimits.unlimited());
+    }
+
+    /**
+     * @param limits 서버의 모든 커넥션이 공유하는 자원 상한 ({@link ConnectionLimits#fromConfig()})
+     */
+    public Http2ServerHandler(RequestHandler handler, RequestExecutor executor, Compression compression,
+        ConnectionLimits limits) {
+        this(new DataCountingEncoder(new DefaultHttp2ConnectionEncoder(new DefaultHttp2Connection(true),
+                new DefaultHttp2FrameWriter(Http2Config.sensitivityDetector()))),
+            new DefaultHttp2FrameReader(),
+            limits.applyTo(Http2Config.settings()), handler, executor, compression, limits);
+    }
+
+    private Http2ServerHandler(DataCountingEncoder dataCounter, Http2FrameReader reader, Http2Settings settings,
+        RequestHandler handler, RequestExecutor executor, Compression compression, ConnectionLimits limits) {
+        this(new CompressorHttp2ConnectionEncoder(dataCounter, Compression.encoderOptions()), dataCounter,
+            reader, settings, handler, executor, compression, limits);
     }
 
-    private Http2ServerHandler(Http2Connection connection, Http2FrameWriter writer, Http2FrameReader reader) {
+    private Http2ServerHandler(Http2ConnectionEncoder encoder, DataCountingEncoder dataCounter, Http2FrameReader reader,
+        Http2Settings settings, RequestHandler handler, RequestExecutor executor, Compression compression,
+        ConnectionLimits limits) {
+        // 디코더도 같은 인코더를 써야 SETTINGS ACK 를 받았을 때 보낸 로컬 설정(초기 윈도우 등)이 적용됨
         super(
-            new DefaultHttp2ConnectionDecoder(connection, new DefaultHttp2ConnectionEncoder(connection, writer), reader),
-            new DefaultHttp2ConnectionEncoder(connection, writer),
-            new Http2Settings()
+            new DefaultHttp2ConnectionDecoder(encoder.connection(), encoder, reader),
+            encoder,
+            settings
         );
+        Http2Connection connection = encoder.connection();
         // Register this as the frame listener after super
-        decoder().frameListener(this);
+        // (content-encoding 이 있는 요청 바디는 풀어서 전달)
+        decoder().frameListener(new DelegatingDecompressorFrameListener(connection, this));
+        this.compression = compression;
+        this.dataCounter = dataCounter;
+        this.handler = handler;
+        this.executor = executor;
+        this.initialWindowSize = Http2Config.initialWindowSize(settings);
+        this.windowTuner = Http2Config.autoTuneWindow() ? newWindowTuner() : null;
+        this.budget = limits.newBudget(connection);
+
+        requestKey = connection.newKey();
+        blockedKey = connection.newKey();
+        Metrics metrics = Metrics.instance();
+        // 스트림이 어떤 이유로든 닫히면(END_STREAM 응답, RST_STREAM, 커넥션 종료) 남은 바디를 해제
+        connection.addListener(new Http2ConnectionAdapter() {
+            @Override
+            public void onStreamActive(Http2Stream stream) {
+                metrics.streamOpened();
+            }
+
+            @Override
+            public void onStreamClosed(Http2Stream stream) {
+                metrics.streamClosed();
+                PendingRequest pending = stream.removeProperty(requestKey);
+                if (pending != null) {
+                    pending.release();
+                }
+                unblocked(stream);
+            }
+        });
+        // 응답 DATA 가 상대 윈도우에 막혀 있던 시간 측정
+        connection.remote().flowController().listener(stream -> {
+            if (stream.state() == Http2Stream.State.CLOSED) {
+                return; // 닫히면서 쓰기 불가로 바뀐 것은 대기가 아님 (onStreamClosed 에서 정리)
+            }
+            if (connection.remote().flowController().isWritable(stream)) {
+                unblocked(stream);
+            } else if (stream.getProperty(blockedKey) == null) {
+                stream.setProperty(blockedKey, System.nanoTime());
+            }
+        });
+    }
+
+    private void unblocked(Http2Stream stream) {
+        Long since = stream.removeProperty(blockedKey);
+        if (since != null) {
+            Metrics.instance().flowControlBlocked(System.nanoTime() - since);
+        }
+    }
+
+    private WindowTuner newWindowTuner() {
+        return new WindowTuner(initialWindowSize, Http2Config.maxWindowSize()) {
+            // 둘 다 읽기 중에 호출되므로 flush 는 channelReadComplete 에 맡김
+            @Override
+            protected void writePing(ChannelHandlerContext ctx, long content) {
+                encoder().writePing(ctx, false, content, ctx.newPromise());
+            }
+
+            @Override
+            protected void updateWindow(ChannelHandlerContext ctx, int connectionIncrement, int streamWindow)
+                throws Http2Exception {
+                connection().local().flowController().incrementWindowSize(connection().connectionStream(),
+                    connectionIncrement);
+                encoder().writeSettings(ctx, new Http2Settings().initialWindowSize(streamWindow), ctx.newPromise());
+            }
+        };
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        super.handlerAdded(ctx);
+        Metrics.instance().connectionOpened();
+        if (ctx.channel().isActive()) {
+            expandConnectionWindow(ctx);
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        super.channelActive(ctx);
+        expandConnectionWindow(ctx);
+    }
+
+    // 서버 preface(SETTINGS) 를 보낸 뒤에 호출해야 함
+    private void expandConnectionWindow(ChannelHandlerContext ctx) throws Http2Exception {
+        if (connectionWindowExpanded) {
+            return;
+        }
+        connectionWindowExpanded = true;
+        Http2Stream connectionStream = connection().connectionStream();
+        int delta = initialWindowSize - connection().local().flowController().windowSize(connectionStream);
+        if (delta > 0) {
+            connection().local().flowController().incrementWindowSize(connectionStream, delta);
+            flush(ctx);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        Metrics.instance().connectionClosed();
+        super.channelInactive(ctx);
+    }
+
+    /** END_STREAM 을 기다리는 동안의 요청 헤더와 바디 */
+    private static final class PendingRequest {
+        final Http2Headers headers;
+        final CompositeByteBuf body;
+        final long startNanos;
+
+        PendingRequest(Http2Headers headers, CompositeByteBuf body, long startNanos) {
+            this.headers = headers;
+            this.body = body;
+            this.startNanos = startNanos;
+        }
+
+        void release() {
+            body.release();
+        }
     }
 
     @Override
@@ -49,12 +234,27 @@ public final class Http2ServerHandler extends Http2ConnectionHandler implements
 
     private void handleHeaders(ChannelHandlerContext ctx, int streamId,
         Http2Headers headers, boolean endOfStream) throws Http2Exception {
-        headersMap.put(streamId, headers);
-        System.out.println("[LOG] Headers received on stream " + streamId + ": path=" + headers.path());
+        Http2Stream stream = connection().stream(streamId);
+        PendingRequest pending = stream.getProperty(requestKey);
+        if (pending != null) {
+            // 바디 뒤의 트레일러: 새 요청이 아니므로 토큰을 쓰지 않고, 트레일러는 쓰지 않고 모은 바디로 요청을 처리
+            if (endOfStream) {
+                stream.removeProperty(requestKey);
+                handleRequest(ctx, streamId, pending.headers, pending.body, pending.startNanos);
+            }
+            return;
+        }
+        long startNanos = System.nanoTime();
+        if (!budget.tryOpenStream()) {
+            // 예외는 Http2ConnectionHandler 가 RST_STREAM 으로 바꿔 보냄
+            Metrics.instance().streamLimited();
+            throw Http2Exception.streamError(streamId, Http2Error.ENHANCE_YOUR_CALM, "stream rate limit exceeded");
+        }
         if (endOfStream) {
-            handleRequest(ctx, streamId, headers, Unpooled.buffer(0));
+            handleRequest(ctx, streamId, headers, Unpooled.EMPTY_BUFFER, startNanos);
         } else {
-            dataBufferMap.put(streamId, Unpooled.buffer());
+            stream.setProperty(requestKey,
+                new PendingRequest(headers, ctx.alloc().compositeBuffer(MAX_BODY_COMPONENTS), startNanos));
         }
     }
 
@@ -62,34 +262,63 @@ public final class Http2ServerHandler extends Http2ConnectionHandler implements
     public int onDataRead(ChannelHandlerContext ctx, int streamId,
         ByteBuf data, int padding,
         boolean endOfStream) throws Http2Exception {
-        ByteBuf buf = dataBufferMap.computeIfAbsent(streamId, id -> Unpooled.buffer());
-        buf.writeBytes(data.retainedSlice());
+        int consumed = data.readableBytes() + padding;
+        Metrics.instance().dataReceived(consumed);
+        if (windowTuner != null) {
+            windowTuner.onDataRead(ctx, consumed);
+        }
+        Http2Stream stream = connection().stream(streamId);
+        PendingRequest pending = stream.getProperty(requestKey);
+        if (pending == null) {
+            // 디코더가 HEADERS 없는 DATA 는 걸러내므로 여기 오면 이미 처리/해제된 스트림
+            return consumed;
+        }
+        // data 는 디코더 누적 버퍼의 slice 이고 리스너 반환 후 디코더가 소유권을 가져가므로
+        // 복사 대신 retain 해서 컴포넌트로 붙이고, 해제는 요청 처리 후 또는 스트림이 닫힐 때 한 번만 함
+        if (data.isReadable()) {
+            // 예약은 스트림이 닫힐 때 반환되고, 넘으면 스트림을 리셋하면서 모으던 바디도 해제됨 (onStreamClosed)
+            if (!budget.reserveBody(stream, data.readableBytes())) {
+                Metrics.instance().streamLimited();
+                throw Http2Exception.streamError(streamId, Http2Error.ENHANCE_YOUR_CALM, "request body budget exceeded");
+            }
+            pending.body.addComponent(true, data.retain());
+        }
 
         if (endOfStream) {
-            Http2Headers h = headersMap.remove(streamId);
-            ByteBuf full = dataBufferMap.remove(streamId);
-            handleRequest(ctx, streamId, h, full);
+            stream.removeProperty(requestKey);
+            handleRequest(ctx, streamId, pending.headers, pending.body, pending.startNanos);
         }
-
-        int consumed = data.readableBytes() + padding;
-        data.release();
         return consumed;
     }
 
     @Override public void onPriorityRead(ChannelHandlerContext ctx, int streamId,
         int streamDependency, short weight,
         boolean exclusive) throws Http2Exception {}
+    // RST_STREAM 을 받으면 스트림이 닫히면서 onStreamClosed 리스너가 모으던 바디를 해제함
     @Override public void onRstStreamRead(ChannelHandlerContext ctx, int streamId,
-        long errorCode) throws Http2Exception {}
+        long errorCode) throws Http2Exception {
+        Metrics.instance().rstStreamReceived();
+        if (!budget.tryReset()) {
+            // rapid reset, 예외는 Http2ConnectionHandler 가 GOAWAY 로 바꿔 보내고 커넥션을 닫음
+            Metrics.instance().connectionLimited();
+            throw Http2Exception.connectionError(Http2Error.ENHANCE_YOUR_CALM, "RST_STREAM rate limit exceeded");
+        }
+    }
     @Override public void onSettingsAckRead(ChannelHandlerContext ctx) throws Http2Exception {}
     @Override public void onSettingsRead(ChannelHandlerContext ctx, Http2Settings settings) throws Http2Exception {}
     @Override public void onPingRead(ChannelHandlerContext ctx, long data) throws Http2Exception {}
-    @Override public void onPingAckRead(ChannelHandlerContext ctx, long data) throws Http2Exception {}
+    @Override public void onPingAckRead(ChannelHandlerContext ctx, long data) throws Http2Exception {
+        if (windowTuner != null) {
+            windowTuner.onPingAckRead(ctx, data);
+        }
+    }
     @Override public void onPushPromiseRead(ChannelHandlerContext ctx, int streamId,
         int promisedStreamId, Http2Headers headers,
         int padding) throws Http2Exception {}
     @Override public void onGoAwayRead(ChannelHandlerContext ctx, int lastStreamId,
-        long errorCode, ByteBuf debugData) throws Http2Exception {}
+        long errorCode, ByteBuf debugData) throws Http2Exception {
+        Metrics.instance().goAwayReceived();
+    }
     @Override public void onWindowUpdateRead(ChannelHandlerContext ctx, int streamId,
         int windowSizeIncrement) throws Http2Exception {}
     @Override public void onUnknownFrame(ChannelHandlerContext ctx, byte frameType,
@@ -112,16 +341,91 @@ public final class Http2ServerHandler extends Http2ConnectionHandler implements
     }
 
     private void handleRequest(ChannelHandlerContext ctx, int streamId,
-        Http2Headers headers, ByteBuf data) {
-        String path = headers.path().toString();
-        String body = data.toString(CharsetUtil.UTF_8);
-        System.out.println("[LOG] Request received: path=" + path + ", body=" + body);
-        String resp = "Received " + body.toUpperCase() + "!!!";
-        ByteBuf content = ctx.alloc().buffer().writeBytes(resp.getBytes(CharsetUtil.UTF_8));
-
-        encoder().writeHeaders(ctx, streamId,
-            new DefaultHttp2Headers().status("200"), 0, false, ctx.newPromise());
-        encoder().writeData(ctx, streamId, content, 0, true, ctx.newPromise());
-        ctx.flush();
+        Http2Headers headers, ByteBuf data, long startNanos) {
+        int requestBytes = data.readableBytes();
+        // 비즈니스 로직은 실행기에서 돌고, 응답은 항상 이 커넥션의 이벤트 루프에서 씀
+        executor.execute(ctx.executor(), handler, new Request(headers, data, ctx.alloc()),
+            (response, cause) -> writeResponse(ctx, streamId, headers, requestBytes, startNanos, response, cause));
+    }
+
+    private void writeResponse(ChannelHandlerContext ctx, int streamId, Http2Headers requestHeaders,
+        int requestBytes, long startNanos, Response response, Throwable cause) {
+        if (cause != null) {
+            System.err.println("[ERROR] Request failed on stream " + streamId + ": " + cause);
+            response = Response.error(cause);
+        }
+        ByteBuf content = response.content();
+        if (connection().stream(streamId) == null) {
+            // 처리 도중 RST_STREAM 이나 커넥션 종료로 스트림이 사라짐
+            content.release();
+            return;
+        }
+        int bodyBytes = content.readableBytes();
+        boolean hasBody = bodyBytes > 0;
+        Http2Headers responseHeaders = response.headers();
+        CharSequence encoding = compression.responseEncoding(
+            requestHeaders.get(HttpHeaderNames.ACCEPT_ENCODING), responseHeaders, bodyBytes);
+        if (encoding != null) {
+            responseHeaders = Compression.withEncoding(responseHeaders, encoding);
+        }
+        long dataBefore = dataCounter.bytes;
+        encoder().writeHeaders(ctx, streamId, responseHeaders, 0, !hasBody, ctx.newPromise());
+        if (hasBody) {
+            encoder().writeData(ctx, streamId, content, 0, true, ctx.newPromise());
+        } else {
+            content.release();
+        }
+        // ctx.flush() 는 이 핸들러를 건너뛰므로 흐름제어에 걸려 대기 중인 DATA 까지 내보내도록 핸들러의 flush 사용
+        flush(ctx);
+        // 압축은 writeData 안에서 끝나므로 (압축한 조각을 바로 내려 보냄) 그 사이에 센 바이트가 이 응답의 DATA
+        long responseBytes = dataCounter.bytes - dataBefore;
+        Metrics.instance().dataSent(responseBytes);
+        Metrics.instance().responseSent(response.headers().status(), startNanos);
+        AccessLog.instance().log(ctx.channel(), streamId, requestHeaders, responseHeaders,
+            requestBytes, responseBytes, startNanos);
+    }
+
+    /**
+     * 기본 핸들러: 바디를 대문자로 바꿔 돌려줌. 요청 content-type 의 charset 으로 해석하고 같은 charset(UTF-16 은 UTF-16BE)으로 응답하며,
+     * String 을 거치지 않고 요청 바디에서 (풀링된) 응답 버퍼로 바로 변환함 ({@link BodyTransformer})
+     */
+    static Response echoUpperCase(Request request) {
+        ByteBuf body = request.content();
+        Charset charset = BodyTransformer.charset(request.headers().get(HttpHeaderNames.CONTENT_TYPE));
+        Charset responseCharset = BodyTransformer.outputCharset(charset);
+        ByteBuf content = request.alloc().buffer(body.readableBytes() + 16);
+        content.writeCharSequence("Received ", responseCharset);
+        BodyTransformer.UPPER_CASE.transform(body, charset, content);
+        content.writeCharSequence("!!!", responseCharset);
+        return new Response(textPlain(responseCharset), content);
+    }
+
+    // UTF-8 이 아닌 charset 의 응답 헤더 템플릿
+    private static final ConcurrentMap<Charset, Http2Headers> TEXT_PLAIN_BY_CHARSET = new ConcurrentHashMap<>();
+
+    /** UTF-8 은 예전처럼 charset 없는 text/plain (클라이언트 기본값), 그 외에는 charset 을 붙임 */
+    private static Http2Headers textPlain(Charset charset) {
+        if (charset.equals(CharsetUtil.UTF_8)) {
+            return ResponseHeaders.OK_TEXT_PLAIN;
+        }
+        return TEXT_PLAIN_BY_CHARSET.computeIfAbsent(charset, c -> ResponseHeaders.of(HttpResponseStatus.OK,
+            HttpHeaderNames.CONTENT_TYPE, ResponseHeaders.TEXT_PLAIN + "; charset=" + c.name()));
+    }
+
+    /** 아래 인코더로 내려가는 DATA 바이트(패딩 포함)를 셈. CompressorHttp2ConnectionEncoder 아래에 두면 압축 뒤 크기 */
+    private static final class DataCountingEncoder extends DecoratingHttp2ConnectionEncoder {
+        // 커넥션의 이벤트 루프에서만 씀
+        long bytes;
+
+        DataCountingEncoder(Http2ConnectionEncoder delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public ChannelFuture writeData(ChannelHandlerContext ctx, int streamId, ByteBuf data, int padding,
+            boolean endOfStream, ChannelPromise promise) {
+            bytes += data.readableBytes() + padding;
+            return super.writeData(ctx, streamId, data, padding, endOfStream, promise);
+        }
     }
 }
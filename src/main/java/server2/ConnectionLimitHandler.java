@@ -0,0 +1,133 @@
+package server2;
+
+import common.ConnectionLimits;
+import common.Metrics;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http2.DefaultHttp2GoAwayFrame;
+import io.netty.handler.codec.http2.DefaultHttp2ResetFrame;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameStream;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2ResetFrame;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.function.Predicate;
+
+/**
+ * 커넥션(부모) 파이프라인에서 Http2FrameCodec 과 Http2MultiplexHandler 사이에 두어 {@link ConnectionLimits} 를 적용하는 핸들러.
+ * 상한을 넘은 스트림은 프레임을 스트림 채널로 넘기지 않고 RST_STREAM(ENHANCE_YOUR_CALM) 으로 끊으며,
+ * 리셋 속도를 넘으면 GOAWAY(ENHANCE_YOUR_CALM) 를 보내고 커넥션을 닫습니다.
+ * 바디 예산은 바디를 모으는 요청에만 적용합니다 (/upload 처럼 흘려 보내는 요청은 흐름제어로 제한됨).
+ * 압축된 요청 바디는 스트림 채널의 {@link common.Http2CompressionHandler} 가 풀기 때문에, 바디 예산은 그 뒤에 두는
+ * {@link #newBodyLimitHandler()} 가 풀린 크기로 예약합니다 (압축된 크기로 세면 작은 gzip 바디로 예산을 피해 힙을 채울 수 있음).
+ */
+public class ConnectionLimitHandler extends ChannelInboundHandlerAdapter {
+
+    private final ConnectionLimits limits;
+    private final Predicate<Http2Headers> buffered;
+
+    private Http2Connection connection;
+    private ConnectionLimits.Budget budget;
+    private int lastStreamId;
+    private boolean goAwaySent;
+
+    /**
+     * @param buffered 요청 헤더를 보고 바디를 모으는 요청인지
+     */
+    public ConnectionLimitHandler(ConnectionLimits limits, Predicate<Http2Headers> buffered) {
+        this.limits = limits;
+        this.buffered = buffered;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        connection = ctx.pipeline().get(Http2FrameCodec.class).connection();
+        budget = limits.newBudget(connection);
+    }
+
+    /**
+     * 이 커넥션의 바디 예산을 쓰는 스트림 채널용 핸들러. 스트림 파이프라인에서 Http2CompressionHandler 뒤에 둡니다.
+     */
+    public ChannelHandler newBodyLimitHandler() {
+        return new BodyLimitHandler();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Http2HeadersFrame) {
+            Http2HeadersFrame frame = (Http2HeadersFrame) msg;
+            int id = frame.stream().id();
+            // 스트림 id 는 늘어나기만 하므로 처음 보는 id 면 새 요청 (아니면 트레일러)
+            if (id > lastStreamId) {
+                lastStreamId = id;
+                if (!budget.tryOpenStream()) {
+                    reset(ctx, frame.stream(), msg);
+                    return;
+                }
+            }
+        } else if (msg instanceof Http2ResetFrame && !budget.tryReset()) {
+            goAway(ctx);
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    /** 스트림 채널로 넘기지 않고 끊음. 스트림이 닫히면 스트림 채널도 닫히고, 받은 바디의 흐름제어 윈도우와 예약이 반환됨 */
+    private void reset(ChannelHandlerContext ctx, Http2FrameStream stream, Object msg) {
+        ReferenceCountUtil.release(msg);
+        Metrics.instance().streamLimited();
+        // 읽기 중이므로 flush 는 코덱의 channelReadComplete 에 맡김
+        ctx.write(new DefaultHttp2ResetFrame(Http2Error.ENHANCE_YOUR_CALM).stream(stream));
+    }
+
+    /** 스트림 채널에서 (풀린) 요청 바디를 예약하고, 예산을 넘으면 스트림을 RST_STREAM(ENHANCE_YOUR_CALM) 으로 끊음 */
+    private final class BodyLimitHandler extends ChannelInboundHandlerAdapter {
+        // 바디를 모으는 요청의 스트림, 흘려 보내는 요청이면 null
+        private Http2Stream stream;
+        private boolean requestSeen;
+        // 예산을 넘어 끊은 스트림, 닫힐 때까지 남은 DATA 는 버림
+        private boolean limited;
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof Http2HeadersFrame && !requestSeen) {
+                requestSeen = true;
+                Http2HeadersFrame frame = (Http2HeadersFrame) msg;
+                if (buffered.test(frame.headers())) {
+                    stream = connection.stream(frame.stream().id());
+                }
+            } else if (msg instanceof Http2DataFrame && stream != null) {
+                if (limited) {
+                    ReferenceCountUtil.release(msg);
+                    return;
+                }
+                if (!budget.reserveBody(stream, ((Http2DataFrame) msg).content().readableBytes())) {
+                    // 예약은 스트림이 닫힐 때 반환되고, 스트림 채널도 닫히면서 뒤 핸들러가 모으던 바디를 정리
+                    limited = true;
+                    ReferenceCountUtil.release(msg);
+                    Metrics.instance().streamLimited();
+                    ctx.writeAndFlush(new DefaultHttp2ResetFrame(Http2Error.ENHANCE_YOUR_CALM));
+                    return;
+                }
+            }
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    private void goAway(ChannelHandlerContext ctx) {
+        if (goAwaySent) {
+            return;
+        }
+        goAwaySent = true;
+        Metrics.instance().connectionLimited();
+        ctx.writeAndFlush(new DefaultHttp2GoAwayFrame(Http2Error.ENHANCE_YOUR_CALM))
+            .addListener(ChannelFutureListener.CLOSE);
+    }
+}
@@ -0,0 +1,33 @@
+package server2;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+
+/**
+ * TLS 핸드셰이크가 끝나면 ALPN 결과를 보고 h2 면 HTTP/2 파이프라인을 붙이고, 그 외(ALPN 없음 포함)는 커넥션을 닫습니다.
+ * SslHandler 바로 뒤에 두며, 협상 전에 받은 바이트는 핸드셰이크 후 붙인 코덱으로 전달됩니다.
+ */
+public class Http2AlpnHandler extends ApplicationProtocolNegotiationHandler {
+
+    private final ChannelHandler http2;
+
+    /**
+     * @param http2 h2 로 협상됐을 때 추가할 핸들러 (보통 코덱 등을 붙이는 ChannelInitializer)
+     */
+    public Http2AlpnHandler(ChannelHandler http2) {
+        super(ApplicationProtocolNames.HTTP_1_1);
+        this.http2 = http2;
+    }
+
+    @Override
+    protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+        if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+            ctx.pipeline().addLast(http2);
+            return;
+        }
+        System.err.println("[WARN] ALPN negotiated " + protocol + ", closing " + ctx.channel().remoteAddress());
+        ctx.close();
+    }
+}
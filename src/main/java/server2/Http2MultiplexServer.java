@@ -1,55 +1,178 @@
 package server2;
 
+import common.BodyAggregator;
+import common.AccessLog;
+import common.Compression;
+import common.ConnectionLimits;
+import common.FlushCoalescingHandler;
+import common.GracefulShutdown;
+import common.ListenerShards;
+import common.Http2CompressionHandler;
+import common.Http2Config;
+import common.Http2Tls;
+import common.Metrics;
+import common.RequestExecutor;
+import common.Response;
+import common.Router;
+import common.StreamingRequestHandler;
+import common.Transport;
+import common.WindowTuningHandler;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
 import io.netty.handler.codec.http2.Http2MultiplexHandler;
 import io.netty.handler.codec.http2.Http2Settings;
 import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.Future;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class Http2MultiplexServer {
-    public static void main(String[] args) throws Exception {
-        int port = 8444;
+    private static final AsciiString UPLOAD_PATH = AsciiString.cached("/upload");
+
+    private final int port;
+    private final Transport transport = Transport.current();
+    private final EventLoopGroup bossGroup = transport.newEventLoopGroup(1);
+    private final EventLoopGroup workerGroup = transport.newEventLoopGroup(0);
+    private final GracefulShutdown shutdown = new GracefulShutdown(bossGroup, workerGroup);
+
+    public Http2MultiplexServer(int port) {
+        this.port = port;
+    }
+
+    /**
+     * 새 커넥션을 그만 받고 진행 중인 스트림을 timeout 까지 마친 뒤 커넥션을 닫습니다 ({@link GracefulShutdown}).
+     * 모든 커넥션이 닫히면 {@link #start()} 가 이벤트 루프를 정리하고 반환합니다.
+     */
+    public Future<Void> drain(long timeout, TimeUnit unit) {
+        return shutdown.drain(timeout, unit);
+    }
 
-        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+    /** SIGTERM 시 drain 하도록 shutdown hook 등록 */
+    public void installShutdownHook() {
+        shutdown.installShutdownHook();
+    }
+
+    /** 서버를 시작하고 drain(또는 서버 채널 종료)이 끝날 때까지 블로킹합니다. */
+    public void start() throws Exception {
+        // 요청 처리 실행 모델 (inline / pool / virtual), 모든 스트림이 공유
+        RequestExecutor executor = RequestExecutor.fromSystemProperties();
+        // 라우팅 테이블은 시작 시 한 번 컴파일해서 모든 스트림이 공유 (등록되지 않은 경로는 기존 에코)
+        Router router = Router.builder()
+            .get("/health", request -> Response.status(HttpResponseStatus.OK))
+            .get("/metrics", Metrics.instance())
+            .post("/test", StreamHandler::echo)
+            .post("/http2-test", StreamHandler::echo)
+            .post("/test2", StreamHandler::echo)
+            .post("/test3", StreamHandler::echo)
+            .fallback(StreamHandler::echo)
+            .build();
+        // 응답 압축/요청 압축 해제 정책 (accept-encoding 협상, 크기/타입 조건)
+        Compression compression = Compression.fromSystemProperties();
+        // /upload 는 바디를 모으지 않고 스트리밍으로 받고, 나머지는 바디를 모아 라우터로 처리
+        int maxContentLength = BodyAggregator.maxContentLengthFromConfig();
+        StreamingRequestHandler aggregated = new BodyAggregator(router, executor, maxContentLength);
+        StreamingRequestHandler handler = request -> UPLOAD_PATH.contentEquals(request.headers().path())
+            ? StreamHandler.countBytes(request)
+            : aggregated.begin(request);
+        // 커넥션별 스트림/리셋 속도와 바디 예산, 서버 전체 바디 상한은 모든 커넥션이 나눠 씀
+        ConnectionLimits limits = ConnectionLimits.fromConfig();
+
+        // h2 파이프라인 (h2c 는 바로, TLS 는 ALPN 으로 h2 가 협상된 뒤에 붙임)
+        ChannelInitializer<Channel> http2 = new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ChannelPipeline p = ch.pipeline();
+                // 여러 스트림의 응답 flush 를 모아서 소켓에 씀 (-Dhttp2.flush.coalesce=true)
+                FlushCoalescingHandler flushCoalescing = FlushCoalescingHandler.fromConfig();
+                if (flushCoalescing != null) {
+                    p.addLast(flushCoalescing);
+                }
+                // HTTP/2 프레임 디코더 및 스트림 multiplexer 핸들러 추가
+                Http2Settings settings = limits.applyTo(Http2Config.settings());
+                Http2FrameCodecBuilder frameCodecBuilder = Http2FrameCodecBuilder.forServer()
+                        .initialSettings(settings)
+                        .headerSensitivityDetector(Http2Config.sensitivityDetector())
+                        .validateHeaders(true); // Optional
+                p.addLast(frameCodecBuilder.build());
+                // 코덱과 multiplexer 사이에서 모든 스트림의 프레임/바이트를 집계
+                p.addLast(new MetricsHandler());
+                // 상한을 넘은 스트림은 스트림 채널로 넘기기 전에 끊음 (바디 예산은 /upload 외의 모으는 요청에만)
+                ConnectionLimitHandler connectionLimits =
+                    new ConnectionLimitHandler(limits, headers -> !UPLOAD_PATH.contentEquals(headers.path()));
+                p.addLast(connectionLimits);
+                WindowTuningHandler windowTuning = WindowTuningHandler.fromConfig(settings);
+                if (windowTuning != null) {
+                    p.addLast(windowTuning);
+                }
+                p.addLast(new Http2MultiplexHandler(
+                    new ChannelInitializer<Http2StreamChannel>() {
+                        @Override
+                        protected void initChannel(Http2StreamChannel ch) throws Exception {
+                            // 압축된 요청 바디는 풀린 크기가 maxContentLength 를 넘으면 더 풀지 않고 413 (/upload 포함)
+                            ch.pipeline().addLast(new Http2CompressionHandler(compression, true, maxContentLength));
+                            // 바디 예산은 압축을 푼 크기로 셈
+                            ch.pipeline().addLast(connectionLimits.newBodyLimitHandler());
+                            ch.pipeline().addLast(new StreamHandler(handler));
+                        }
+                    }
+                ));
+            }
+        };
+        // -Dhttp2.tls=true 면 TLS(h2), SslContext 는 모든 커넥션이 공유
+        SslContext sslContext = Http2Tls.serverContextFromConfig();
 
         try {
             ServerBootstrap b = new ServerBootstrap();
-            b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+            transport.configure(b)
                     .childHandler(new ChannelInitializer<SocketChannel>() {
                         @Override
                         protected void initChannel(SocketChannel ch) {
-                            ChannelPipeline p = ch.pipeline();
-                            // HTTP/2 프레임 디코더 및 스트림 multiplexer 핸들러 추가
-                            Http2FrameCodecBuilder frameCodecBuilder = Http2FrameCodecBuilder.forServer()
-                                    .initialSettings(Http2Settings.defaultSettings())
-                                    .validateHeaders(true); // Optional
-                            p.addLast(frameCodecBuilder.build());
-                            p.addLast(new Http2MultiplexHandler(
-                                new ChannelInitializer<Http2StreamChannel>() {
-                                    @Override
-                                    protected void initChannel(Http2StreamChannel ch) throws Exception {
-                                        ch.pipeline().addLast(new StreamHandler());
-                                    }
-                                }
-                            ));
+                            shutdown.track(ch);
+                            if (sslContext != null) {
+                                ch.pipeline().addLast(sslContext.newHandler(ch.alloc()), new Http2AlpnHandler(http2));
+                            } else {
+                                ch.pipeline().addLast(http2);
+                            }
                         }
                     });
 
-            Channel ch = b.bind(port).sync().channel();
-            System.out.println("HTTP/2 server started on port " + port);
-            ch.closeFuture().sync();
+            // -Dhttp2.shards 면 SO_REUSEPORT 로 같은 포트에 여러 리스닝 소켓 (common.ListenerShards 참고)
+            ListenerShards shards = ListenerShards.fromConfig(transport, workerGroup);
+            List<Channel> listeners = shards != null ? shards.bind(b, port) : Collections.singletonList(b.group(bossGroup, workerGroup).bind(port).sync().channel());
+            System.out.println("HTTP/2 server started on port " + port + " (" + transport
+                + (sslContext != null ? ", TLS " + Http2Tls.provider() : ", h2c")
+                + (shards != null ? ", " + shards.size() + " listener shards" : "") + ")");
+            for (Channel ch : listeners) {
+                shutdown.bound(ch);
+            }
+            for (Channel ch : listeners) {
+                ch.closeFuture().sync();
+            }
+            // drain 으로 서버 채널이 닫힌 경우 남은 커넥션이 모두 닫힐 때까지 기다림 (그 외에는 여기서 drain 시작)
+            shutdown.drain(GracefulShutdown.timeoutMillisFromConfig(), TimeUnit.MILLISECONDS).syncUninterruptibly();
         } finally {
+            // drain 이 끝난 뒤라 더 기록될 요청이 없음
+            AccessLog.instance().close();
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
+            executor.shutdown();
         }
     }
+
+    public static void main(String[] args) throws Exception {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8444;
+        Http2MultiplexServer server = new Http2MultiplexServer(port);
+        server.installShutdownHook();
+        server.start();
+    }
 }
@@ -0,0 +1,70 @@
+package server2;
+
+import common.Metrics;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2GoAwayFrame;
+import io.netty.handler.codec.http2.Http2ResetFrame;
+import io.netty.handler.codec.http2.Http2Stream;
+
+/**
+ * 커넥션(부모) 파이프라인에서 Http2FrameCodec 과 Http2MultiplexHandler 사이에 두어
+ * 모든 스트림의 프레임을 한 곳에서 세는 핸들러. 요청 지연/흐름제어 대기는 스트림 채널의 {@link StreamHandler} 가 기록합니다.
+ */
+public class MetricsHandler extends ChannelDuplexHandler {
+
+    private final Metrics metrics = Metrics.instance();
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        Http2FrameCodec codec = ctx.pipeline().get(Http2FrameCodec.class);
+        codec.connection().addListener(new Http2ConnectionAdapter() {
+            @Override
+            public void onStreamActive(Http2Stream stream) {
+                metrics.streamOpened();
+            }
+
+            @Override
+            public void onStreamClosed(Http2Stream stream) {
+                metrics.streamClosed();
+            }
+        });
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        metrics.connectionOpened();
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        metrics.connectionClosed();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Http2DataFrame) {
+            metrics.dataReceived(((Http2DataFrame) msg).initialFlowControlledBytes());
+        } else if (msg instanceof Http2ResetFrame) {
+            metrics.rstStreamReceived();
+        } else if (msg instanceof Http2GoAwayFrame) {
+            metrics.goAwayReceived();
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof Http2DataFrame) {
+            Http2DataFrame frame = (Http2DataFrame) msg;
+            metrics.dataSent(frame.content().readableBytes() + frame.padding());
+        }
+        super.write(ctx, msg, promise);
+    }
+}
@@ -1,73 +1,281 @@
 package server2;
 
+import common.AccessLog;
+import common.BodyAggregator;
+import common.Metrics;
+import common.Request;
+import common.RequestExecutor;
+import common.RequestHandler;
+import common.Response;
+import common.ResponseHeaders;
+import common.StreamingRequestHandler;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
-import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http2.*;
-import io.netty.util.CharsetUtil;
 
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
+/**
+ * 스트림 채널 하나(= 요청 하나)를 처리하는 핸들러.
+ *
+ * autoRead 를 끄고 바디 조각을 하나씩 {@link StreamingRequestHandler.BodyHandler} 에 넘기며,
+ * 처리할 준비가 됐을 때만 다음 프레임을 읽습니다. 스트림 채널은 읽은 DATA 만큼만 상대에게 윈도우를 돌려주므로
+ * 느린 소비자는 흐름제어로 송신자를 늦춥니다.
+ */
 public class StreamHandler extends ChannelInboundHandlerAdapter {
 
+    private final StreamingRequestHandler handler;
+
     private Http2Headers headers;
-    private final ByteBuf body = Unpooled.buffer();
+    private int streamId;
+    private long startNanos;
+    // 바디를 받는 중인 요청, END_STREAM 을 넘겼거나 실패하면 null
+    private StreamingRequestHandler.BodyHandler body;
+    private long requestBytes;
+    private boolean requestEnded;
+    // 스트림 채널이 쓰기 불가(흐름제어 윈도우 소진)가 된 시각, 0 이면 쓰기 가능
+    private long blockedSince;
+
+    public StreamHandler() {
+        this(StreamHandler::echo, RequestExecutor.inline());
+    }
+
+    /** 바디 전체를 모아(상한 {@link BodyAggregator#maxContentLengthFromConfig()}) handler 를 실행 */
+    public StreamHandler(RequestHandler handler, RequestExecutor executor) {
+        this(new BodyAggregator(handler, executor, BodyAggregator.maxContentLengthFromConfig()));
+    }
+
+    public StreamHandler(StreamingRequestHandler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        ctx.channel().config().setAutoRead(false);
+        if (ctx.channel().isActive()) {
+            ctx.read();
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        super.channelActive(ctx);
+        ctx.read();
+    }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (msg instanceof Http2HeadersFrame) {
             Http2HeadersFrame headersFrame = (Http2HeadersFrame) msg;
-            this.headers = headersFrame.headers();
-
-            if (headersFrame.isEndStream()) {
-                // 바디 없이 끝나는 경우 (GET 등)
-                handleRequest(ctx, headers, Unpooled.EMPTY_BUFFER);
+            if (headers == null) {
+                beginRequest(ctx, headersFrame);
+            } else if (headersFrame.isEndStream()) {
+                // 트레일러는 쓰지 않고 END_STREAM 만 반영
+                endRequest(ctx);
+            } else {
+                ctx.read();
             }
 
         } else if (msg instanceof Http2DataFrame) {
             Http2DataFrame dataFrame = (Http2DataFrame) msg;
-            body.writeBytes(dataFrame.content());
-
-            if (dataFrame.isEndStream()) {
-                // 바디 전체 수신 완료
-                handleRequest(ctx, headers, body.copy());
-                body.clear(); // or release if using ref-counted buffer
+            boolean endStream = dataFrame.isEndStream();
+            if (body == null) {
+                // 이미 실패 응답을 보낸 요청의 남은 바디는 버림
+                dataFrame.release();
+                if (endStream) {
+                    requestEnded = true;
+                }
+                ctx.read();
+                return;
+            }
+            requestBytes += dataFrame.content().readableBytes();
+            CompletionStage<?> ready;
+            try {
+                ready = body.onData(dataFrame.content());
+            } catch (Throwable t) {
+                failRequest(ctx, t);
+                return;
+            } finally {
+                dataFrame.release();
+            }
+            if (ready == null) {
+                readNext(ctx, endStream);
+            } else {
+                ready.whenComplete((ignored, cause) -> runInLoop(ctx, () -> {
+                    if (body == null) {
+                        return; // 기다리는 동안 스트림이 닫힘
+                    }
+                    if (cause != null) {
+                        failRequest(ctx, cause);
+                    } else {
+                        readNext(ctx, endStream);
+                    }
+                }));
             }
-
-            dataFrame.release(); // ref-counted 객체 해제
         } else {
             ctx.fireChannelRead(msg); // 기타 프레임 전달
         }
     }
 
-    private void handleRequest(ChannelHandlerContext ctx, Http2Headers headers, ByteBuf fullBody) {
-        // path, method 등 headers에서 추출
-        String path = headers.path().toString();
-        String method = headers.method().toString();
-        String bodyString = fullBody.toString(CharsetUtil.UTF_8);
+    private void beginRequest(ChannelHandlerContext ctx, Http2HeadersFrame headersFrame) {
+        this.headers = headersFrame.headers();
+        this.streamId = headersFrame.stream() != null ? headersFrame.stream().id() : 0;
+        this.startNanos = System.nanoTime();
+        try {
+            body = handler.begin(new Request(headers, Unpooled.EMPTY_BUFFER, ctx.alloc()));
+        } catch (Throwable t) {
+            requestEnded = headersFrame.isEndStream();
+            failRequest(ctx, t);
+            return;
+        }
+        readNext(ctx, headersFrame.isEndStream());
+    }
 
-        // 여기에 로직 처리
-        System.out.printf("Got %s %s\nBody: %s\n", method, path, bodyString);
+    private void readNext(ChannelHandlerContext ctx, boolean endStream) {
+        if (endStream) {
+            endRequest(ctx);
+        } else {
+            ctx.read();
+        }
+    }
 
-        // 응답 예시
-        String responseString = bodyString;
-//        String responseString = "ERROR";
-        ByteBuf responseContent = ctx.alloc()
-            .buffer().writeBytes(responseString.getBytes(StandardCharsets.UTF_8));
+    private void endRequest(ChannelHandlerContext ctx) {
+        requestEnded = true;
+        StreamingRequestHandler.BodyHandler ended = body;
+        body = null;
+        // 스트림이 닫히는 것(RST_STREAM 등)을 계속 받을 수 있도록 읽기는 유지
+        ctx.read();
+        if (ended == null) {
+            return;
+        }
+        CompletionStage<Response> response;
+        try {
+            response = ended.onEnd();
+        } catch (Throwable t) {
+            writeResponse(ctx, null, t);
+            return;
+        }
+        response.whenComplete((r, cause) -> runInLoop(ctx, () -> writeResponse(ctx, r, cause)));
+    }
 
-        Http2Headers responseHeaders = new DefaultHttp2Headers()
-                .status("200")
-                .set("content-type", "text/plain");
+    private void failRequest(ChannelHandlerContext ctx, Throwable cause) {
+        StreamingRequestHandler.BodyHandler failed = body;
+        body = null;
+        if (failed != null) {
+            failed.onAbort(cause);
+        }
+        writeResponse(ctx, null, cause);
+        // 남은 바디를 읽어서 버림 (응답 뒤 RST_STREAM 으로 끊지 못한 경우 대비)
+        ctx.read();
+    }
 
-        ctx.write(new DefaultHttp2HeadersFrame(responseHeaders));
-        ctx.writeAndFlush(new DefaultHttp2DataFrame(responseContent, true));
+    private static void runInLoop(ChannelHandlerContext ctx, Runnable task) {
+        if (ctx.executor().inEventLoop()) {
+            task.run();
+        } else {
+            ctx.executor().execute(task);
+        }
+    }
+
+    private void writeResponse(ChannelHandlerContext ctx, Response response, Throwable cause) {
+        if (cause != null) {
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            System.err.println("[ERROR] Request failed on " + ctx.channel() + ": " + cause);
+            response = Response.error(cause);
+        }
+        ByteBuf content = response.content();
+        int responseBytes = content.readableBytes();
+        ChannelFuture done;
+        if (responseBytes == 0) {
+            content.release();
+            done = ctx.writeAndFlush(new DefaultHttp2HeadersFrame(response.headers(), true));
+        } else {
+            // 스트림이 이미 닫혔으면 write 가 실패하면서 content 도 해제됨
+            ctx.write(new DefaultHttp2HeadersFrame(response.headers()));
+            done = ctx.writeAndFlush(new DefaultHttp2DataFrame(content, true));
+        }
+        if (!requestEnded) {
+            // 바디를 다 받기 전에 응답했으면(413 등) 나머지 업로드를 멈추게 함 (RFC 9113 8.1)
+            done.addListener(f -> {
+                if (f.isSuccess() && !requestEnded) {
+                    ctx.writeAndFlush(new DefaultHttp2ResetFrame(Http2Error.NO_ERROR));
+                }
+            });
+        }
+        Metrics.instance().responseSent(response.headers().status(), startNanos);
+        AccessLog.instance().log(ctx.channel(), streamId,
+            headers, response.headers(), requestBytes, responseBytes, startNanos);
+    }
+
+    /** 기본 핸들러: 받은 바디를 text/plain 으로 그대로 돌려줌 */
+    static Response echo(Request request) {
+        return new Response(ResponseHeaders.OK_TEXT_PLAIN, request.content().retainedDuplicate());
+    }
+
+    /** 스트리밍 핸들러 예: 바디를 저장하지 않고 크기만 세어 돌려줌 (대용량 업로드 확인용) */
+    static StreamingRequestHandler.BodyHandler countBytes(Request request) {
+        return new StreamingRequestHandler.BodyHandler() {
+            private long received;
+
+            @Override
+            public CompletionStage<?> onData(ByteBuf chunk) {
+                received += chunk.readableBytes();
+                return null;
+            }
+
+            @Override
+            public CompletionStage<Response> onEnd() {
+                ByteBuf content = ByteBufUtil.writeAscii(request.alloc(), "Received " + received + " bytes");
+                return CompletableFuture.completedFuture(new Response(ResponseHeaders.OK_TEXT_PLAIN, content));
+            }
+        };
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            blockedSince = System.nanoTime();
+        } else {
+            unblocked();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    private void unblocked() {
+        if (blockedSince != 0) {
+            Metrics.instance().flowControlBlocked(System.nanoTime() - blockedSince);
+            blockedSince = 0;
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        // 앞의 핸들러가 요청 바디를 더 넘기지 못함 (Http2CompressionHandler 의 풀린 바디 상한 초과 등)
+        if (body == null) {
+            ctx.fireExceptionCaught(cause);
+            return;
+        }
+        failRequest(ctx, cause);
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-//        body.release(); // clean up
+        unblocked();
+        // END_STREAM 전에 스트림이 닫히면 처리 중이던 바디 정리
+        if (body != null) {
+            StreamingRequestHandler.BodyHandler aborted = body;
+            body = null;
+            aborted.onAbort(new ClosedChannelException());
+        }
         super.channelInactive(ctx);
     }
-}
\ No newline at end of file
+}
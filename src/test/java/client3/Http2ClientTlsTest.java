@@ -0,0 +1,132 @@
+package client3;
+
+import common.Http2Tls;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import server2.Http2MultiplexServer;
+
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 테스트 중에 만든 자체 서명 인증서로 server2 를 TLS 로 띄우고 client3 로 연결해 ALPN(h2) 협상과 세션 재개를 확인합니다.
+ */
+class Http2ClientTlsTest {
+
+    private static final String[] PROPERTIES = {
+        "http2.tls", "http2.tls.provider", "http2.tls.cert", "http2.tls.key", "http2.tls.trustCert", "http2.accessLog"};
+
+    private static SelfSignedCertificate certificate;
+    private static Http2MultiplexServer server;
+    private static Thread serverThread;
+    private static int port;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        certificate = new SelfSignedCertificate("localhost");
+        System.setProperty("http2.tls", "true");
+        // 세션 재개 확인은 JDK provider 기준 (tcnative 는 -Ptcnative 일 때만 있음)
+        System.setProperty("http2.tls.provider", "jdk");
+        System.setProperty("http2.tls.cert", certificate.certificate().getPath());
+        System.setProperty("http2.tls.key", certificate.privateKey().getPath());
+        System.setProperty("http2.tls.trustCert", certificate.certificate().getPath());
+        System.setProperty("http2.accessLog", "off");
+
+        port = freePort();
+        server = new Http2MultiplexServer(port);
+        serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, "http2-tls-test-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        awaitListening(port);
+    }
+
+    @AfterAll
+    static void stopServer() throws Exception {
+        if (server != null) {
+            server.drain(1, TimeUnit.SECONDS).await(5, TimeUnit.SECONDS);
+            serverThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        if (certificate != null) {
+            certificate.delete();
+        }
+        for (String name : PROPERTIES) {
+            System.clearProperty(name);
+        }
+    }
+
+    @Test
+    void negotiatesH2AndResumesSession() throws Exception {
+        // 클라이언트 세션 캐시는 SslContext 에 있으므로 같은 컨텍스트로 다시 연결하면 재개됨
+        SslContext sslContext = Http2Tls.clientContext();
+
+        SSLSession first = exchange(sslContext);
+        SSLSession second = exchange(sslContext);
+
+        // 재개된 세션은 처음 세션의 생성 시각을 이어받음 (TLS 1.3 은 재개해도 세션 id 가 새로 만들어짐)
+        assertEquals(first.getCreationTime(), second.getCreationTime(),
+            "second connection did not resume the TLS session (" + second.getProtocol() + ")");
+    }
+
+    /** 새 클라이언트로 연결해 요청 하나를 주고받고, 그 커넥션의 TLS 세션을 돌려줌 */
+    private static SSLSession exchange(SslContext sslContext) throws Exception {
+        Http2Client client = new Http2Client("localhost", port, sslContext);
+        try {
+            client.connect();
+            Channel channel = client.channel();
+            assertNotNull(channel);
+            SslHandler ssl = channel.pipeline().get(SslHandler.class);
+            assertEquals(ApplicationProtocolNames.HTTP_2, ssl.applicationProtocol());
+
+            Http2Response response = client.send(Http2Request.post("/test",
+                Unpooled.copiedBuffer("hello", CharsetUtil.UTF_8), "text/plain")).get(5, TimeUnit.SECONDS);
+            try {
+                assertEquals(200, response.status());
+            } finally {
+                response.release();
+            }
+            return ssl.engine().getSession();
+        } finally {
+            client.close();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitListening(int port) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 200);
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IllegalStateException("server did not start on port " + port);
+    }
+}
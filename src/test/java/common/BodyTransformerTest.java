@@ -0,0 +1,118 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link BodyTransformer#UPPER_CASE} 결과를 String 으로 디코딩 → 대문자 변환 → 인코딩한 것과 비교합니다.
+ * 입력 조각(8192 바이트)과 디코딩 조각(4096 바이트) 경계에 멀티바이트 문자와 surrogate pair 가 걸리도록 앞에 붙이는 길이를 바꿔 가며 확인합니다.
+ */
+class BodyTransformerTest {
+
+    private static final Charset EUC_KR = Charset.forName("EUC-KR");
+
+    @Test
+    void multibyteCharacterAcrossChunkBoundary() {
+        // ASCII 뒤의 한글 (3 바이트) 이 8192 바이트 입력 조각 경계에 걸림
+        for (int prefix = 8189; prefix <= 8192; prefix++) {
+            assertTransformed(repeat("a", prefix) + "가나다 abc 라마바" + repeat("x", 100), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void multibyteCharacterAcrossDecodeBoundary() {
+        // 긴 비ASCII 구간이 4096 바이트씩 디코딩되며 조각 경계가 문자 중간에 옴
+        for (int prefix = 0; prefix < 3; prefix++) {
+            assertTransformed(repeat("a", prefix) + repeat("한글é", 2000) + "end", StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void surrogatePairAcrossDecodeBoundary() {
+        // U+10428 → U+10400 (Deseret), 대문자 변환 결과도 surrogate pair
+        String deseret = new String(Character.toChars(0x10428));
+        for (int prefix = 0; prefix < 4; prefix++) {
+            String body = repeat("é", prefix) + repeat(deseret, 3000) + "z";
+            assertTransformed(body, StandardCharsets.UTF_8);
+            assertTransformed(body, StandardCharsets.UTF_16BE);
+        }
+    }
+
+    @Test
+    void eucKrRoundTrip() {
+        String body = "<?xml version=\"1.0\" encoding=\"EUC-KR\"?><msg>안녕하세요 hello 한글 테스트</msg>";
+        assertTransformed(body, EUC_KR);
+        assertTransformed(repeat(body, 500), EUC_KR);
+        // 입력 조각 경계에 2 바이트 한글이 걸림
+        assertTransformed(repeat("a", 8191) + "한글" + repeat("b", 40), EUC_KR);
+    }
+
+    @Test
+    void utf16OutputHasNoByteOrderMark() {
+        assertEquals(StandardCharsets.UTF_16BE, BodyTransformer.outputCharset(StandardCharsets.UTF_16));
+
+        ByteBuf in = Unpooled.wrappedBuffer("hello 한글".getBytes(StandardCharsets.UTF_16));
+        ByteBuf out = Unpooled.buffer();
+        try {
+            // 같은 버퍼에 두 번 덧붙여도 중간에 BOM 이 끼지 않음
+            BodyTransformer.UPPER_CASE.transform(in, StandardCharsets.UTF_16, out);
+            BodyTransformer.UPPER_CASE.transform(in, StandardCharsets.UTF_16, out);
+            assertArrayEquals("HELLO 한글HELLO 한글".getBytes(StandardCharsets.UTF_16BE), ByteBufUtil.getBytes(out));
+        } finally {
+            in.release();
+            out.release();
+        }
+    }
+
+    /** 통짜 버퍼와, DATA 프레임처럼 작은 조각을 이어 붙인 CompositeByteBuf 모두 기대한 결과인지 확인 */
+    private static void assertTransformed(String body, Charset charset) {
+        byte[] bytes = body.getBytes(charset);
+        byte[] expected = upperCase(new String(bytes, charset)).getBytes(BodyTransformer.outputCharset(charset));
+
+        assertArrayEquals(expected, transform(Unpooled.wrappedBuffer(bytes), charset), charset + " contiguous");
+
+        CompositeByteBuf composite = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        for (int off = 0; off < bytes.length; off += 1021) {
+            composite.addComponent(true, Unpooled.copiedBuffer(bytes, off, Math.min(1021, bytes.length - off)));
+        }
+        assertArrayEquals(expected, transform(composite, charset), charset + " composite");
+    }
+
+    private static byte[] transform(ByteBuf in, Charset charset) {
+        ByteBuf out = Unpooled.buffer();
+        try {
+            BodyTransformer.UPPER_CASE.transform(in, charset, out);
+            return ByteBufUtil.getBytes(out);
+        } finally {
+            in.release();
+            out.release();
+        }
+    }
+
+    /** 코드 포인트 단위 대문자 변환 (길이가 바뀌는 변환은 하지 않음, BodyTransformer 와 같음) */
+    private static String upperCase(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        s.codePoints().forEach(cp -> {
+            int mapped = Character.toUpperCase(cp);
+            sb.appendCodePoint(Character.charCount(mapped) == Character.charCount(cp) ? mapped : cp);
+        });
+        return sb.toString();
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder sb = new StringBuilder(s.length() * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
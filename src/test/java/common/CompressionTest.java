@@ -0,0 +1,80 @@
+package common;
+
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.AsciiString;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * accept-encoding 협상 ({@link Compression#negotiate(CharSequence)}) 과 응답 압축 조건.
+ * br 은 brotli4j 가 클래스패스에 있을 때만 고르므로 기대값도 그에 따름.
+ */
+class CompressionTest {
+
+    private static final Compression COMPRESSION =
+        new Compression(true, 1024, new String[]{"text/", "application/json", "+xml"}, null);
+
+    @Test
+    void picksHighestQuality() {
+        assertEquals(HttpHeaderValues.GZIP, Compression.negotiate("gzip, deflate"));
+        assertEquals(HttpHeaderValues.DEFLATE, Compression.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(HttpHeaderValues.GZIP, Compression.negotiate("deflate;q=0.2, gzip;q=0.8"));
+    }
+
+    @Test
+    void prefersBrotliOnTieWhenAvailable() {
+        AsciiString expected = Brotli.isAvailable() ? Compression.BR : HttpHeaderValues.GZIP;
+        assertEquals(expected, Compression.negotiate("gzip, deflate, br"));
+        assertEquals(HttpHeaderValues.GZIP, Compression.negotiate("br;q=0.5, gzip"));
+    }
+
+    @Test
+    void ignoresCaseWhitespaceAndAliases() {
+        assertEquals(HttpHeaderValues.GZIP, Compression.negotiate(" GZIP ; q=1 "));
+        assertEquals(HttpHeaderValues.GZIP, Compression.negotiate("x-gzip"));
+    }
+
+    @Test
+    void rejectsZeroQualityAndUnknownCodings() {
+        assertNull(Compression.negotiate("gzip;q=0"));
+        assertNull(Compression.negotiate("identity"));
+        assertNull(Compression.negotiate("compress, zstd"));
+        // 잘못된 q 는 0 으로 봄
+        assertEquals(HttpHeaderValues.DEFLATE, Compression.negotiate("gzip;q=abc, deflate;q=0.1"));
+    }
+
+    @Test
+    void wildcardAppliesToUnlistedCodings() {
+        AsciiString expected = Brotli.isAvailable() ? Compression.BR : HttpHeaderValues.DEFLATE;
+        assertEquals(expected, Compression.negotiate("gzip;q=0.1, *;q=0.5"));
+        // 명시한 q=0 은 * 보다 우선
+        assertEquals(HttpHeaderValues.DEFLATE, Compression.negotiate("*, gzip;q=0, br;q=0"));
+        assertNull(Compression.negotiate("*;q=0"));
+    }
+
+    @Test
+    void compressesOnlyEligibleResponses() {
+        assertEquals(HttpHeaderValues.GZIP, COMPRESSION.responseEncoding("gzip", response("200", "text/plain"), 2048));
+        assertEquals(HttpHeaderValues.GZIP,
+            COMPRESSION.responseEncoding("gzip", response("200", "application/soap+xml; charset=UTF-8"), 2048));
+        // 크기를 모르면 크기 조건을 보지 않음
+        assertEquals(HttpHeaderValues.GZIP, COMPRESSION.responseEncoding("gzip", response("200", "text/plain"), -1));
+
+        assertNull(COMPRESSION.responseEncoding("gzip", response("200", "text/plain"), 100));
+        assertNull(COMPRESSION.responseEncoding("gzip", response("200", "image/png"), 2048));
+        assertNull(COMPRESSION.responseEncoding("gzip", response("404", "text/plain"), 2048));
+        assertNull(COMPRESSION.responseEncoding(null, response("200", "text/plain"), 2048));
+        Http2Headers encoded = response("200", "text/plain").set(HttpHeaderNames.CONTENT_ENCODING, "gzip");
+        assertNull(COMPRESSION.responseEncoding("gzip", encoded, 2048));
+    }
+
+    private static Http2Headers response(String status, String contentType) {
+        return new DefaultHttp2Headers().status(status).set(HttpHeaderNames.CONTENT_TYPE, contentType);
+    }
+}
@@ -0,0 +1,135 @@
+package common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link Http2CompressionHandler} 의 받은 바디 압축 해제 (나눠서 풀기, 풀린 크기 상한) 와 클라이언트 요청 헤더.
+ */
+class Http2CompressionHandlerTest {
+
+    private static final Compression COMPRESSION = new Compression(true, 1024, new String[]{"text/"}, null);
+
+    @Test
+    void inflatesLargeFrameStepByStepOnRead() throws IOException {
+        EmbeddedChannel channel = new EmbeddedChannel(new Http2CompressionHandler(COMPRESSION, true, 8 * 1024 * 1024));
+        // server2 의 StreamHandler 처럼 준비됐을 때만 read
+        channel.config().setAutoRead(false);
+        channel.writeInbound(gzipRequestHeaders());
+        Http2HeadersFrame headers = channel.readInbound();
+        assertNull(headers.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+
+        // 16KB 가 안 되는 DATA 하나가 2MB 로 풀림, read 마다 한 조각씩
+        channel.writeInbound(new DefaultHttp2DataFrame(gzip(new byte[2 * 1024 * 1024]), true));
+        long total = 0;
+        int reads = 0;
+        for (;;) {
+            Http2DataFrame frame = channel.readInbound();
+            assertNull(channel.readInbound(), "more than one step per read");
+            assertTrue(frame.content().readableBytes() <= 1024 * 1024, "one step inflated too much");
+            total += frame.content().readableBytes();
+            boolean endStream = frame.isEndStream();
+            frame.release();
+            if (endStream) {
+                break;
+            }
+            channel.read();
+            reads++;
+        }
+        assertEquals(2 * 1024 * 1024, total);
+        assertTrue(reads > 1);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void inflatesWholeFrameWithAutoRead() throws IOException {
+        EmbeddedChannel channel = new EmbeddedChannel(new Http2CompressionHandler(COMPRESSION, false));
+        channel.writeInbound(gzipRequestHeaders());
+        ((Http2HeadersFrame) channel.readInbound()).headers();
+
+        channel.writeInbound(new DefaultHttp2DataFrame(gzip(new byte[2 * 1024 * 1024]), true));
+        long total = 0;
+        boolean endStream = false;
+        Http2DataFrame frame;
+        while ((frame = channel.readInbound()) != null) {
+            total += frame.content().readableBytes();
+            endStream = frame.isEndStream();
+            frame.release();
+        }
+        assertEquals(2 * 1024 * 1024, total);
+        assertTrue(endStream);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void stopsInflatingPastLimit() throws IOException {
+        EmbeddedChannel channel = new EmbeddedChannel(new Http2CompressionHandler(COMPRESSION, true, 1024 * 1024));
+        channel.writeInbound(gzipRequestHeaders());
+        ((Http2HeadersFrame) channel.readInbound()).headers();
+
+        ByteBuf bomb = gzip(new byte[16 * 1024 * 1024]);
+        assertThrows(TooLongFrameException.class, () -> channel.writeInbound(new DefaultHttp2DataFrame(bomb, true)));
+        long total = 0;
+        boolean endStream = false;
+        Http2DataFrame frame;
+        while ((frame = channel.readInbound()) != null) {
+            total += frame.content().readableBytes();
+            endStream = frame.isEndStream();
+            frame.release();
+        }
+        // 상한을 넘는 조각은 넘기지 않고, END_STREAM 만 전달
+        assertTrue(total <= 1024 * 1024, "forwarded " + total + " bytes");
+        assertTrue(endStream);
+        assertEquals(0, bomb.refCnt());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void clientAddsAcceptEncodingOnlyToRequestHeaders() {
+        EmbeddedChannel channel = new EmbeddedChannel(new Http2CompressionHandler(COMPRESSION, false));
+        channel.writeOutbound(new DefaultHttp2HeadersFrame(new DefaultHttp2Headers().method("POST").path("/test")));
+        channel.writeOutbound(new DefaultHttp2DataFrame(Unpooled.copiedBuffer(new byte[10]), false));
+        channel.writeOutbound(new DefaultHttp2HeadersFrame(new DefaultHttp2Headers().add("x-checksum", "abc"), true));
+
+        Http2HeadersFrame request = channel.readOutbound();
+        assertEquals(COMPRESSION.acceptEncoding(), request.headers().get(HttpHeaderNames.ACCEPT_ENCODING));
+        ((Http2DataFrame) channel.readOutbound()).release();
+        Http2HeadersFrame trailers = channel.readOutbound();
+        assertTrue(trailers.isEndStream());
+        assertNull(trailers.headers().get(HttpHeaderNames.ACCEPT_ENCODING));
+        assertFalse(channel.finish());
+    }
+
+    private static Http2HeadersFrame gzipRequestHeaders() {
+        return new DefaultHttp2HeadersFrame(new DefaultHttp2Headers().method("POST").path("/test")
+            .set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.GZIP));
+    }
+
+    private static ByteBuf gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return Unpooled.wrappedBuffer(out.toByteArray());
+    }
+}
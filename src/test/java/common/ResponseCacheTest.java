@@ -0,0 +1,77 @@
+package common;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * {@link ResponseCache} 의 If-None-Match 처리 (GET/HEAD 는 304, 그 외는 412) 와 ETag.
+ */
+class ResponseCacheTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    // path 에 따라 길이는 같고 내용이 다른 바디
+    private final RequestHandler handler = request -> {
+        calls.incrementAndGet();
+        return new Response(ResponseHeaders.OK_TEXT_PLAIN,
+            Unpooled.copiedBuffer("body of " + request.headers().path(), CharsetUtil.UTF_8));
+    };
+    private final RequestHandler cached = new ResponseCache(1024 * 1024).cached(handler, 60, TimeUnit.SECONDS, true);
+
+    @Test
+    void getWithMatchingEtagIsNotModified() throws Exception {
+        CharSequence etag = etag(handle("GET", "/a", null));
+
+        Response response = handle("GET", "/a", etag);
+        assertEquals(HttpResponseStatus.NOT_MODIFIED.codeAsText(), response.headers().status());
+        assertEquals(HttpResponseStatus.NOT_MODIFIED.codeAsText(), handle("HEAD", "/a", "*").headers().status());
+        assertEquals(HttpResponseStatus.OK.codeAsText(), handle("GET", "/a", "\"other\"").headers().status());
+    }
+
+    @Test
+    void otherMethodsWithMatchingEtagFailPrecondition() throws Exception {
+        // 처음 요청은 핸들러를 실행했으므로 조건과 관계없이 그 결과로 응답
+        Response first = handle("POST", "/a", "*");
+        assertEquals(HttpResponseStatus.OK.codeAsText(), first.headers().status());
+        CharSequence etag = etag(first);
+        assertEquals(1, calls.get());
+
+        assertEquals(HttpResponseStatus.PRECONDITION_FAILED.codeAsText(), handle("POST", "/a", etag).headers().status());
+        assertEquals(HttpResponseStatus.PRECONDITION_FAILED.codeAsText(), handle("POST", "/a", "*").headers().status());
+        assertEquals(1, calls.get());
+        assertEquals(HttpResponseStatus.OK.codeAsText(), handle("POST", "/a", "\"other\"").headers().status());
+    }
+
+    @Test
+    void sameLengthBodiesGetDifferentEtags() throws Exception {
+        CharSequence a = etag(handle("GET", "/a", null));
+        CharSequence b = etag(handle("GET", "/b", null));
+        assertNotEquals(a.toString(), b.toString());
+        assertEquals(HttpResponseStatus.OK.codeAsText(), handle("GET", "/b", a).headers().status());
+    }
+
+    private Response handle(String method, String path, CharSequence ifNoneMatch) throws Exception {
+        Http2Headers headers = new DefaultHttp2Headers().method(method).path(path);
+        if (ifNoneMatch != null) {
+            headers.set(HttpHeaderNames.IF_NONE_MATCH, ifNoneMatch);
+        }
+        Response response = cached.handle(new Request(headers, Unpooled.EMPTY_BUFFER, ByteBufAllocator.DEFAULT));
+        response.content().release();
+        return response;
+    }
+
+    private static CharSequence etag(Response response) {
+        return response.headers().get(HttpHeaderNames.ETAG);
+    }
+}
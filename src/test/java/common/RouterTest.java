@@ -0,0 +1,122 @@
+package common;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.util.AsciiString;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link Router} 매칭 우선순위(리터럴 &gt; 파라미터 &gt; prefix), 파라미터 캡처, fallback 과 405.
+ * 각 핸들러는 이름과 캡처한 파라미터를 x-route 헤더로 돌려줌.
+ */
+class RouterTest {
+
+    private static final AsciiString ROUTE = AsciiString.cached("x-route");
+
+    private final Router router = Router.builder()
+        .get("/users/list", route("list"))
+        .post("/users/list", route("create"))
+        .get("/users/{id}", route("user", "id"))
+        .get("/users/{id}/posts/{post}", route("post", "id", "post"))
+        .get("/a/b/c", route("abc"))
+        .get("/a/{x}/d", route("axd", "x"))
+        .get("/static/*", route("static"))
+        .get("/static/img/*", route("img"))
+        .get("/trailing/", route("trailing"))
+        .get("/k/a", route("a"))
+        .get("/k/ab", route("ab"))
+        .get("/k/B", route("B"))
+        .get("/k/aa", route("aa"))
+        .get("/k/b", route("b"))
+        .fallback(route("fallback"))
+        .build();
+
+    @Test
+    void literalBeatsParameter() throws Exception {
+        assertEquals("list", handle("GET", "/users/list"));
+        assertEquals("create", handle("POST", "/users/list"));
+        assertEquals("user id=42", handle("GET", "/users/42"));
+    }
+
+    @Test
+    void capturesParametersWithoutQuery() throws Exception {
+        assertEquals("user id=42", handle("GET", "/users/42?verbose=1"));
+        assertEquals("post id=7 post=99", handle("GET", "/users/7/posts/99"));
+    }
+
+    @Test
+    void backtracksFromLiteralToParameter() throws Exception {
+        assertEquals("abc", handle("GET", "/a/b/c"));
+        // 리터럴 b 아래에 d 가 없으므로 {x} 로 다시 매칭
+        assertEquals("axd x=b", handle("GET", "/a/b/d"));
+    }
+
+    @Test
+    void longestPrefixWins() throws Exception {
+        assertEquals("static", handle("GET", "/static"));
+        assertEquals("static", handle("GET", "/static/css/site.css"));
+        assertEquals("img", handle("GET", "/static/img/logo.png"));
+        assertEquals("trailing", handle("GET", "/trailing"));
+    }
+
+    @Test
+    void matchesSortedSiblings() throws Exception {
+        for (String key : new String[]{"a", "ab", "B", "aa", "b"}) {
+            assertEquals(key, handle("GET", "/k/" + key));
+        }
+        assertEquals("fallback", handle("GET", "/k/c"));
+    }
+
+    @Test
+    void fallsBackOrRejectsMethod() throws Exception {
+        assertEquals("fallback", handle("GET", "/nope"));
+        assertEquals("fallback", handle("GET", "relative"));
+        assertEquals("fallback", handle("GET", "/users/42/unknown"));
+
+        Response response = router.handle(request("DELETE", "/users/list"));
+        assertEquals(HttpResponseStatus.METHOD_NOT_ALLOWED.codeAsText(), response.headers().status());
+        assertEquals("GET, POST", response.headers().get(HttpHeaderNames.ALLOW).toString());
+    }
+
+    @Test
+    void defaultFallbackIsNotFound() throws Exception {
+        Router empty = Router.builder().get("/only", route("only")).build();
+        assertEquals(HttpResponseStatus.NOT_FOUND.codeAsText(), empty.handle(request("GET", "/other")).headers().status());
+    }
+
+    @Test
+    void rejectsInvalidPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> Router.builder().get("no-slash", route("x")));
+        assertThrows(IllegalArgumentException.class, () -> Router.builder().get("/a//b", route("x")));
+        assertThrows(IllegalArgumentException.class, () -> Router.builder().get("/a/*/b", route("x")));
+        assertThrows(IllegalArgumentException.class,
+            () -> Router.builder().get("/dup", route("x")).route(HttpMethod.GET, "/dup", route("y")));
+    }
+
+    private String handle(String method, String path) throws Exception {
+        return router.handle(request(method, path)).headers().get(ROUTE).toString();
+    }
+
+    private static Request request(String method, String path) {
+        return new Request(new DefaultHttp2Headers().method(method).path(path), Unpooled.EMPTY_BUFFER, ByteBufAllocator.DEFAULT);
+    }
+
+    /** name 과 캡처한 params 를 "name p=v ..." 로 돌려주는 핸들러 */
+    private static RequestHandler route(String name, String... params) {
+        return request -> {
+            StringBuilder sb = new StringBuilder(name);
+            for (String param : params) {
+                sb.append(' ').append(param).append('=').append(request.param(param));
+            }
+            return new Response(new DefaultHttp2Headers().status(HttpResponseStatus.OK.codeAsText()).set(ROUTE, sb),
+                Unpooled.EMPTY_BUFFER);
+        };
+    }
+}